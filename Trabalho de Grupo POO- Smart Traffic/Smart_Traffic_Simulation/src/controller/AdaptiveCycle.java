@@ -3,15 +3,20 @@ package controller;
 import model.Intersection;
 import model.Road;
 import model.TrafficLight;
-import model.state.GreenState;
-import model.state.RedState;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * AdaptiveCycle with preemption awareness.
  * Prevents switching when there's zero waiting vehicles to avoid accidental all-green.
+ *
+ * Per-intersection state lives in arrays indexed by Intersection.getIndex(), so applying the
+ * strategy does no hashing or boxing. Each intersection only touches its own slot and its own
+ * lights, which lets applyAll decide independent intersections in parallel (see setParallelThreshold).
+ * A slot remembers the intersection that used it and starts over when another one (from a rebuilt
+ * world that reuses this strategy) takes its index.
  */
 public class AdaptiveCycle implements Strategy {
     private final double baseGreen;   // minimum green duration (s)
@@ -19,8 +24,10 @@ public class AdaptiveCycle implements Strategy {
     private final double maxGreen;    // cap for green duration
     private final double minGreenHold; // minimum time to hold green once assigned
 
-    private final Map<Intersection, Road> currentGreenRoad = new HashMap<>();
-    private final Map<Intersection, Double> greenElapsed = new HashMap<>();
+    private Road[] currentGreenRoad = new Road[0];
+    private double[] greenElapsed = new double[0];
+    private Intersection[] owners = new Intersection[0];
+    private int parallelThreshold = Integer.MAX_VALUE; // sequential unless enabled
 
     public AdaptiveCycle(double baseGreen, double kPerVehicle, double maxGreen, double minGreenHold) {
         this.baseGreen = baseGreen;
@@ -29,24 +36,64 @@ public class AdaptiveCycle implements Strategy {
         this.minGreenHold = minGreenHold;
     }
 
+    // ---------- checkpoint support (package-private) ----------
+
+    double getBaseGreen() { return baseGreen; }
+    double getKPerVehicle() { return kPerVehicle; }
+    double getMaxGreen() { return maxGreen; }
+    double getMinGreenHold() { return minGreenHold; }
+    int getStateCount() { return greenElapsed.length; }
+    Road getCurrentGreenRoad(int index) { return currentGreenRoad[index]; }
+    double getGreenElapsed(int index) { return greenElapsed[index]; }
+
+    void restoreState(int index, Road green, double elapsed) {
+        ensureCapacity(index + 1);
+        currentGreenRoad[index] = green;
+        greenElapsed[index] = elapsed;
+        owners[index] = null; // kept by whichever intersection applies it first
+    }
+
+    /**
+     * applyAll runs intersections in parallel when there are at least this many (default: never).
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = Math.max(1, parallelThreshold);
+    }
+
+    @Override
+    public void applyAll(double simTime, double dt, List<Intersection> intersections) {
+        int n = intersections.size();
+        // grow the state arrays up front so parallel workers never resize them
+        int maxIndex = -1;
+        for (int i = 0; i < n; i++) maxIndex = Math.max(maxIndex, intersections.get(i).getIndex());
+        ensureCapacity(maxIndex + 1);
+
+        if (n >= parallelThreshold) {
+            IntStream.range(0, n).parallel().forEach(i -> apply(dt, intersections.get(i)));
+        } else {
+            for (int i = 0; i < n; i++) apply(dt, intersections.get(i));
+        }
+    }
+
     @Override
     public void apply(double dt, Intersection intersection) {
+        int idx = intersection.getIndex();
+        if (idx < 0) throw new IllegalArgumentException("intersection " + intersection.getId() + " has no index; add it to the Simulation first");
+        if (idx >= greenElapsed.length) ensureCapacity(idx + 1);
+        if (owners[idx] != intersection) claim(idx, intersection);
+
         // update all lights' internal timers
-        for (TrafficLight t : intersection.getLights().values()) {
-            t.update(dt);
-        }
+        intersection.updateLights(dt);
 
         // increment green elapsed for this intersection
-        greenElapsed.putIfAbsent(intersection, 0.0);
-        double elapsed = greenElapsed.get(intersection) + dt;
-        greenElapsed.put(intersection, elapsed);
+        greenElapsed[idx] += dt;
 
         // if the intersection currently has an active priority request, respect it
         if (intersection.hasPriority()) {
             Road pr = intersection.getPriorityRoad();
             if (pr != null) {
-                currentGreenRoad.put(intersection, pr);
-                greenElapsed.put(intersection, 0.0);
+                currentGreenRoad[idx] = pr;
+                greenElapsed[idx] = 0.0;
             }
             return;
         }
@@ -54,7 +101,8 @@ public class AdaptiveCycle implements Strategy {
         // compute waiting counts to choose best road
         Road best = null;
         int maxWaiting = -1;
-        for (Road r : intersection.getLights().keySet()) {
+        for (int a = 0, n = intersection.getApproachCount(); a < n; a++) {
+            Road r = intersection.getApproach(a);
             int waiting = intersection.countWaitingVehicles(r);
             if (waiting > maxWaiting) {
                 maxWaiting = waiting;
@@ -68,14 +116,14 @@ public class AdaptiveCycle implements Strategy {
             return;
         }
 
-        Road current = currentGreenRoad.get(intersection);
+        Road current = currentGreenRoad[idx];
         if (current == null) {
             assignGreen(intersection, best, maxWaiting);
             return;
         }
 
         // enforce minGreenHold
-        if (!current.equals(best) && greenElapsed.getOrDefault(intersection, 0.0) < minGreenHold) {
+        if (!current.equals(best) && greenElapsed[idx] < minGreenHold) {
             return;
         }
 
@@ -86,22 +134,40 @@ public class AdaptiveCycle implements Strategy {
             TrafficLight tl = intersection.getLightForRoad(current);
             double adaptiveDuration = Math.min(maxGreen, baseGreen + kPerVehicle * maxWaiting);
             if (tl.getColor() != model.LightColor.GREEN) {
-                tl.setState(new GreenState(adaptiveDuration));
+                tl.setGreen(adaptiveDuration);
             }
         }
     }
 
     private void assignGreen(Intersection intersection, Road best, int waitingCount) {
         double adaptiveDuration = Math.min(maxGreen, baseGreen + kPerVehicle * waitingCount);
-        for (Road r : intersection.getLights().keySet()) {
-            TrafficLight t = intersection.getLights().get(r);
+        for (int a = 0, n = intersection.getApproachCount(); a < n; a++) {
+            Road r = intersection.getApproach(a);
+            TrafficLight t = intersection.getApproachLight(a);
             if (r.equals(best)) {
-                t.setState(new GreenState(adaptiveDuration));
+                t.setGreen(adaptiveDuration);
             } else {
-                t.setState(new RedState(t.getRedDuration()));
+                t.setRed(t.getRedDuration());
             }
         }
-        currentGreenRoad.put(intersection, best);
-        greenElapsed.put(intersection, 0.0);
+        currentGreenRoad[intersection.getIndex()] = best;
+        greenElapsed[intersection.getIndex()] = 0.0;
+    }
+
+    private void claim(int idx, Intersection intersection) {
+        if (owners[idx] != null) {
+            // another world's intersection held this slot: its green road is not one of ours
+            currentGreenRoad[idx] = null;
+            greenElapsed[idx] = 0.0;
+        }
+        owners[idx] = intersection;
+    }
+
+    private synchronized void ensureCapacity(int n) {
+        if (greenElapsed.length >= n) return;
+        int cap = Math.max(n, greenElapsed.length * 2);
+        currentGreenRoad = Arrays.copyOf(currentGreenRoad, cap);
+        greenElapsed = Arrays.copyOf(greenElapsed, cap);
+        owners = Arrays.copyOf(owners, cap);
     }
 }
\ No newline at end of file
@@ -0,0 +1,120 @@
+package controller;
+
+import model.LaneKernel;
+import util.Metrics;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Checks that a steady-state Simulation.tick allocates zero bytes, using the per-thread allocation
+ * counter of com.sun.management.ThreadMXBean. Ticks that spawn a vehicle are reported apart: a new
+ * Vehicle (and its id and random stream) is the only allocation a tick is allowed to make.
+ *
+ * Runs the sample cross with MaxPressure, AdaptiveCycle and FixedCycle, per-vehicle and lane-kernel
+ * updates, snapshots on. Exits with status 1 if any other tick allocated.
+ *
+ * C2 can scalar-replace objects that do not escape, so whether an allocation shows up would depend on
+ * how long the warmup let it compile. The check therefore only measures in a JVM limited to C1 (or
+ * interpreted), which allocates every object the code creates; otherwise it reruns itself in one.
+ * A warmup shorter than the default may still report ticks where a road's vehicle list first grows.
+ *
+ * Usage: java controller.AllocationCheck [warmupTicks] [measuredTicks]
+ */
+public class AllocationCheck {
+
+    public static void main(String[] args) throws Exception {
+        if (!allocationsVisible()) System.exit(relaunchWithoutC2(args));
+
+        int warmup = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int measured = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("thread allocation counters not supported by this JVM");
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        boolean ok = true;
+        for (String strategy : new String[]{"MaxPressure", "AdaptiveCycle", "FixedCycle"}) {
+            for (boolean lanes : new boolean[]{false, true}) {
+                ok &= run(threads, strategy, lanes, warmup, measured);
+            }
+        }
+        if (!ok) System.exit(1);
+    }
+
+    /**
+     * True when no compiler that removes allocations is active: C1 only, or interpreter only.
+     */
+    private static boolean allocationsVisible() {
+        if (System.getProperty("java.vm.info", "").contains("interpreted mode")) return true;
+        HotSpotDiagnosticMXBean vm = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        return Boolean.parseBoolean(vm.getVMOption("TieredCompilation").getValue())
+                && Integer.parseInt(vm.getVMOption("TieredStopAtLevel").getValue()) <= 1;
+    }
+
+    private static int relaunchWithoutC2(String[] args) throws Exception {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        cmd.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        cmd.add("-XX:+TieredCompilation");
+        cmd.add("-XX:TieredStopAtLevel=1");
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(AllocationCheck.class.getName());
+        cmd.addAll(List.of(args));
+        System.out.println("measuring in a C1-only JVM (-XX:TieredStopAtLevel=1)");
+        return new ProcessBuilder(cmd).inheritIO().start().waitFor();
+    }
+
+    private static boolean run(com.sun.management.ThreadMXBean threads, String strategyName, boolean lanes,
+                               int warmup, int measured) {
+        Simulation sim = Scenarios.buildCross(1L);
+        if (lanes) sim.setLaneKernel(LaneKernel.create(false));
+        Strategy strategy = strategy(strategyName);
+        for (int i = 0; i < warmup; i++) sim.tick(0.05, strategy);
+
+        // room for every sample up front, so recording snapshots never grows the history arrays
+        Metrics m = sim.getMetrics();
+        int approaches = 0;
+        for (model.Intersection in : sim.getIntersections()) approaches += in.getApproachCount();
+        m.reserve(m.getSnapshotCount() + measured, approaches);
+
+        int spawnTicks = 0, allocatingTicks = 0;
+        long spawnBytes = 0, otherBytes = 0;
+        for (int i = 0; i < measured; i++) {
+            int nextId = sim.getNextVehicleId();
+            long before = threads.getCurrentThreadAllocatedBytes();
+            sim.tick(0.05, strategy);
+            long bytes = threads.getCurrentThreadAllocatedBytes() - before;
+            if (sim.getNextVehicleId() != nextId) {
+                spawnTicks++;
+                spawnBytes += bytes;
+            } else if (bytes > 0) {
+                allocatingTicks++;
+                otherBytes += bytes;
+            }
+        }
+
+        boolean ok = allocatingTicks == 0;
+        System.out.printf(Locale.ROOT, "%-14s %-12s %6d ticks: %5d spawning (%.0f B each), %d others allocated %d B  %s%n",
+                strategyName, lanes ? "lane-kernel" : "per-vehicle", measured, spawnTicks,
+                spawnTicks == 0 ? 0.0 : (double) spawnBytes / spawnTicks, allocatingTicks, otherBytes, ok ? "OK" : "FAIL");
+        return ok;
+    }
+
+    private static Strategy strategy(String name) {
+        switch (name) {
+            case "AdaptiveCycle": return new AdaptiveCycle(5, 1, 20, 3);
+            case "FixedCycle": return new FixedCycle(10);
+            default: return new MaxPressure(5);
+        }
+    }
+}
\ No newline at end of file
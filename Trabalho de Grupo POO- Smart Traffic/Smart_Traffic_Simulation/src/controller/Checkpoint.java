@@ -0,0 +1,609 @@
+package controller;
+
+import model.Intersection;
+import model.LightColor;
+import model.Road;
+import model.TrafficLight;
+import model.Vehicle;
+import model.state.GreenState;
+import model.state.RedState;
+import model.state.TrafficLightState;
+import model.state.YellowState;
+import util.LogHistogram;
+import util.Metrics;
+import util.RandomStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary checkpoint of a whole Simulation (topology, lights, vehicles, RNG, metric counters)
+ * plus the Strategy driving it, so many experiments can start from one warmed-up world.
+ *
+ * Objects are written by index (roads/intersections/vehicles in Simulation order), so restore is a
+ * single sequential read with no lookups. Metrics snapshot history is not saved, only its counters.
+ * Scheduled Demand (OD matrix, profile, pending arrivals and its random stream) is saved too,
+ * and so are the trip and approach histograms (sparse buckets).
+ */
+public final class Checkpoint {
+    private static final int MAGIC = 0x53544350; // "STCP"
+    // format history (any other version is rejected):
+    // 1 topology, lights, vehicles, RNG, metric counters and strategy; 2 adds scheduled Demand
+    // 3 adds turn ratios per incoming road
+    // 4 adds per-vehicle trip state, the waiting aggregate and trip/approach histograms
+    // 5 adds spawn time, origin, last road and road count per vehicle
+    // 6 adds the demand's entry lines (due arrivals waiting to spawn, per origin)
+    private static final int VERSION = 6;
+
+    private static final byte STRATEGY_NONE = 0;
+    private static final byte STRATEGY_FIXED = 1;
+    private static final byte STRATEGY_ADAPTIVE = 2;
+    private static final byte STRATEGY_SIGNAL_PLAN = 3;
+    private static final byte STRATEGY_MAX_PRESSURE = 4;
+
+    private final Simulation simulation;
+    private final Strategy strategy;
+
+    private Checkpoint(Simulation simulation, Strategy strategy) {
+        this.simulation = simulation;
+        this.strategy = strategy;
+    }
+
+    public Simulation getSimulation() { return simulation; }
+
+    /**
+     * Restored strategy (with its internal state), or null if none was saved.
+     */
+    public Strategy getStrategy() { return strategy; }
+
+    /**
+     * Save sim and its strategy (may be null) to path.
+     */
+    public static void save(Simulation sim, Strategy strategy, Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            write(sim, strategy, out);
+        }
+    }
+
+    public static Checkpoint load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * In-memory checkpoint (used to fork a running simulation). Holds the sim lock only while encoding.
+     */
+    public static byte[] capture(Simulation sim, Strategy strategy) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(sim, strategy, out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Checkpoint capture failed", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Build an independent copy from capture() output.
+     */
+    public static Checkpoint restore(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            return read(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Checkpoint restore failed", e);
+        }
+    }
+
+    // ---------- write ----------
+
+    static void write(Simulation sim, Strategy strategy, DataOutputStream out) throws IOException {
+        synchronized (sim) {
+            if (sim.getOffHeapEngine() != null) throw new IOException("Off-heap vehicles are not supported by checkpoints");
+            sim.flushPipeline(); // metric counters must include every tick
+            List<Road> roads = sim.getRoads();
+            List<Intersection> intersections = sim.getIntersections();
+            List<Vehicle> vehicles = sim.vehicleList();
+            Map<Road, Integer> roadIdx = indexOf(roads);
+            Map<Intersection, Integer> interIdx = indexOf(intersections);
+            Map<Vehicle, Integer> vehicleIdx = indexOf(vehicles);
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            // simulation clock and random source
+            out.writeLong(sim.getSeed());
+            out.writeDouble(sim.getSimTime());
+            out.writeDouble(sim.getSpawnInterval());
+            out.writeDouble(sim.getSpawnAccumulator());
+            out.writeInt(sim.getNextVehicleId());
+            out.writeLong(sim.getRandom().getState());
+            out.writeLong(sim.getRandom().getGamma());
+
+            // topology
+            out.writeInt(intersections.size());
+            for (Intersection in : intersections) out.writeUTF(in.getId());
+            out.writeInt(roads.size());
+            for (Road r : roads) {
+                out.writeUTF(r.getId());
+                out.writeDouble(r.getLength());
+                out.writeInt(ref(interIdx, r.getFrom()));
+                out.writeInt(ref(interIdx, r.getTo()));
+            }
+
+            // intersections: lights, preemption, turn options
+            for (Intersection in : intersections) {
+                Map<Road, TrafficLight> lights = in.getLights();
+                out.writeInt(lights.size());
+                for (Map.Entry<Road, TrafficLight> e : lights.entrySet()) {
+                    out.writeInt(ref(roadIdx, e.getKey()));
+                    writeLight(e.getValue(), out);
+                }
+                out.writeInt(ref(roadIdx, in.getPriorityRoad()));
+                out.writeDouble(in.getPriorityTimeRemaining());
+
+                List<Road> outgoing = in.getOutgoingRoads();
+                writeRoadList(outgoing, roadIdx, out);
+
+                int configured = 0;
+                for (Road r : roads) if (in.getConfiguredOptions(r) != null) configured++;
+                out.writeInt(configured);
+                for (Road r : roads) {
+                    List<Road> opts = in.getConfiguredOptions(r);
+                    if (opts == null) continue;
+                    out.writeInt(roadIdx.get(r));
+                    writeRoadList(opts, roadIdx, out);
+                }
+
+                int withRatios = 0;
+                for (Road r : roads) if (in.getTurnRatios(r) != null) withRatios++;
+                out.writeInt(withRatios);
+                for (Road r : roads) {
+                    double[][] ratios = in.getTurnRatios(r);
+                    if (ratios == null) continue;
+                    out.writeInt(roadIdx.get(r));
+                    out.writeInt(ratios.length);
+                    out.writeInt(ratios[0].length);
+                    for (double[] row : ratios) for (double w : row) out.writeDouble(w);
+                }
+            }
+
+            // vehicles (Simulation order), then lane order per road
+            out.writeInt(vehicles.size());
+            for (Vehicle v : vehicles) {
+                out.writeUTF(v.getId());
+                out.writeInt(ref(roadIdx, v.getRoad()));
+                out.writeInt(v.getLane());
+                out.writeDouble(v.getPosition());
+                out.writeDouble(v.getSpeed());
+                out.writeDouble(v.getWaitingTime());
+                out.writeDouble(v.getTripTime());
+                out.writeDouble(v.getRoadTime());
+                out.writeDouble(v.getRoadWaitStart());
+                out.writeDouble(v.getSpawnTime());
+                out.writeInt(ref(roadIdx, v.getOrigin()));
+                out.writeInt(ref(roadIdx, v.getLastRoad()));
+                out.writeInt(v.getRoadsVisited());
+                out.writeInt(v.getRouteIndex());
+                if (v.getRoute() == null) out.writeInt(-1);
+                else writeRoadList(v.getRoute(), roadIdx, out);
+                RandomStream rs = v.getRandom();
+                out.writeBoolean(rs != null);
+                if (rs != null) {
+                    out.writeLong(rs.getState());
+                    out.writeLong(rs.getGamma());
+                }
+            }
+            for (Road r : roads) {
+                for (int lane = 0; lane < 2; lane++) {
+                    List<Vehicle> inLane = r.getVehiclesInLane(lane);
+                    out.writeInt(inLane.size());
+                    for (Vehicle v : inLane) out.writeInt(ref(vehicleIdx, v));
+                }
+            }
+
+            // metric counters
+            Metrics m = sim.getMetrics();
+            out.writeInt(m.getCompleted());
+            out.writeLong(m.getSampleCount());
+            out.writeDouble(m.getAvgWaitingSum());
+            out.writeDouble(m.getLastAvgWaiting());
+            out.writeDouble(m.getActiveWaiting());
+            writeHistogram(m.getTripWaiting(), out);
+            writeHistogram(m.getTripTravelTime(), out);
+            for (Road r : roads) {
+                LogHistogram w = m.getApproachWaiting(r);
+                out.writeBoolean(w != null);
+                if (w == null) continue;
+                writeHistogram(w, out);
+                writeHistogram(m.getApproachTravelTime(r), out);
+            }
+
+            writeStrategy(strategy, interIdx, roadIdx, out);
+            writeDemand(sim.getDemand(), roadIdx, out);
+        }
+    }
+
+    private static void writeDemand(Demand d, Map<Road, Integer> roadIdx, DataOutputStream out) throws IOException {
+        out.writeBoolean(d != null);
+        if (d == null) return;
+        Road[] origins = d.getOrigins();
+        Road[] dests = d.getDestinations();
+        out.writeInt(origins.length);
+        for (Road r : origins) out.writeInt(ref(roadIdx, r));
+        out.writeInt(dests.length);
+        for (Road r : dests) out.writeInt(ref(roadIdx, r));
+        for (double[] row : d.getOd()) for (double v : row) out.writeDouble(v);
+        for (double v : d.getProfile()) out.writeDouble(v);
+        RandomStream rs = d.getRandom();
+        out.writeBoolean(rs != null);
+        if (rs != null) {
+            out.writeLong(rs.getState());
+            out.writeLong(rs.getGamma());
+        }
+        out.writeLong(d.getSpawned());
+        out.writeLong(d.getRetries());
+        List<Demand.Arrival> pending = d.pendingArrivals();
+        out.writeInt(pending.size());
+        for (Demand.Arrival a : pending) {
+            out.writeDouble(a.getTime());
+            out.writeInt(a.getOrigin());
+            out.writeInt(a.getDestination());
+            out.writeBoolean(a.isGenerated());
+        }
+        for (int o = 0; o < origins.length; o++) {
+            List<Demand.Arrival> line = d.waitingArrivals(o);
+            out.writeInt(line.size());
+            for (Demand.Arrival a : line) {
+                out.writeDouble(a.getTime());
+                out.writeInt(a.getDestination());
+            }
+        }
+    }
+
+    private static void writeHistogram(LogHistogram h, DataOutputStream out) throws IOException {
+        int used = 0, slots = 0;
+        for (int b = 0; b < h.getBucketSlots(); b++) {
+            if (h.getBucket(b) == 0) continue;
+            used++;
+            slots = b + 1;
+        }
+        out.writeInt(slots);
+        out.writeInt(used);
+        for (int b = 0; b < slots; b++) {
+            if (h.getBucket(b) == 0) continue;
+            out.writeInt(b);
+            out.writeLong(h.getBucket(b));
+        }
+        out.writeDouble(h.getSum());
+        out.writeDouble(h.getMin());
+        out.writeDouble(h.getMax());
+    }
+
+    private static void writeLight(TrafficLight light, DataOutputStream out) throws IOException {
+        out.writeDouble(light.getGreenDuration());
+        out.writeDouble(light.getYellowDuration());
+        out.writeDouble(light.getRedDuration());
+        TrafficLightState st = light.getState();
+        out.writeByte(st == null ? -1 : st.getColor().ordinal());
+        if (st != null) {
+            out.writeDouble(st.getDuration());
+            out.writeDouble(st.getElapsed());
+        }
+    }
+
+    private static void writeStrategy(Strategy strategy, Map<Intersection, Integer> interIdx,
+                                      Map<Road, Integer> roadIdx, DataOutputStream out) throws IOException {
+        if (strategy == null) {
+            out.writeByte(STRATEGY_NONE);
+        } else if (strategy instanceof FixedCycle) {
+            FixedCycle f = (FixedCycle) strategy;
+            out.writeByte(STRATEGY_FIXED);
+            out.writeDouble(f.getSwitchInterval());
+            out.writeDouble(f.getTimer());
+            out.writeInt(f.getCurrentIndex());
+        } else if (strategy instanceof AdaptiveCycle) {
+            AdaptiveCycle a = (AdaptiveCycle) strategy;
+            out.writeByte(STRATEGY_ADAPTIVE);
+            out.writeDouble(a.getBaseGreen());
+            out.writeDouble(a.getKPerVehicle());
+            out.writeDouble(a.getMaxGreen());
+            out.writeDouble(a.getMinGreenHold());
+            // state slots are dense intersection indexes, which match the checkpoint's intersection order
+            int n = Math.min(a.getStateCount(), interIdx.size());
+            out.writeInt(n);
+            for (int i = 0; i < n; i++) {
+                out.writeInt(i);
+                out.writeDouble(a.getGreenElapsed(i));
+                out.writeInt(ref(roadIdx, a.getCurrentGreenRoad(i)));
+            }
+        } else if (strategy instanceof SignalPlan) {
+            SignalPlan s = (SignalPlan) strategy;
+            out.writeByte(STRATEGY_SIGNAL_PLAN);
+            int n = Math.min(s.getStateCount(), interIdx.size());
+            out.writeInt(n);
+            for (int i = 0; i < n; i++) {
+                out.writeBoolean(s.hasPlan(i));
+                if (!s.hasPlan(i)) continue;
+                out.writeDouble(s.getOffset(i));
+                out.writeDouble(s.getClock(i));
+                out.writeInt(s.getLastPhase(i));
+                out.writeInt(s.getPhaseCount(i));
+                for (int p = 0; p < s.getPhaseCount(i); p++) {
+                    out.writeDouble(s.getSplit(i, p));
+                    Road[] served = s.getPhaseRoads(i, p);
+                    out.writeInt(served.length);
+                    for (Road r : served) out.writeInt(ref(roadIdx, r));
+                }
+            }
+        } else if (strategy instanceof MaxPressure) {
+            MaxPressure m = (MaxPressure) strategy;
+            out.writeByte(STRATEGY_MAX_PRESSURE);
+            out.writeDouble(m.getMinGreen());
+            int n = Math.min(m.getStateCount(), interIdx.size());
+            out.writeInt(n);
+            for (int i = 0; i < n; i++) {
+                out.writeInt(m.getCurrent(i));
+                out.writeInt(m.getNext(i));
+                out.writeDouble(m.getElapsed(i));
+            }
+        } else {
+            throw new IOException("Strategy not supported by checkpoints: " + strategy.getClass().getName());
+        }
+    }
+
+    private static void writeRoadList(List<Road> list, Map<Road, Integer> roadIdx, DataOutputStream out) throws IOException {
+        out.writeInt(list.size());
+        for (Road r : list) out.writeInt(ref(roadIdx, r));
+    }
+
+    private static <T> Map<T, Integer> indexOf(List<T> list) {
+        Map<T, Integer> idx = new IdentityHashMap<>(list.size() * 2);
+        for (int i = 0; i < list.size(); i++) idx.put(list.get(i), i);
+        return idx;
+    }
+
+    private static <T> int ref(Map<T, Integer> idx, T obj) throws IOException {
+        if (obj == null) return -1;
+        Integer i = idx.get(obj);
+        if (i == null) throw new IOException("Object not registered in the simulation: " + obj);
+        return i;
+    }
+
+    // ---------- read ----------
+
+    static Checkpoint read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Not a simulation checkpoint");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("Unsupported checkpoint version " + version);
+
+        long seed = in.readLong();
+        double simTime = in.readDouble();
+        double spawnInterval = in.readDouble();
+        double spawnAccumulator = in.readDouble();
+        int nextVehicleId = in.readInt();
+        RandomStream random = RandomStream.restore(in.readLong(), in.readLong());
+
+        Simulation sim = new Simulation(seed, random);
+        sim.restoreClock(simTime, spawnInterval, spawnAccumulator, nextVehicleId);
+
+        Intersection[] inters = new Intersection[in.readInt()];
+        for (int i = 0; i < inters.length; i++) {
+            inters[i] = new Intersection(in.readUTF());
+            sim.addIntersection(inters[i]);
+        }
+        Road[] roads = new Road[in.readInt()];
+        for (int i = 0; i < roads.length; i++) {
+            String id = in.readUTF();
+            double length = in.readDouble();
+            Intersection from = pick(inters, in.readInt());
+            Intersection to = pick(inters, in.readInt());
+            roads[i] = new Road(id, length, from, to);
+            sim.addRoad(roads[i]);
+        }
+
+        for (Intersection inter : inters) {
+            int nLights = in.readInt();
+            for (int j = 0; j < nLights; j++) {
+                Road r = roads[in.readInt()];
+                inter.addIncomingRoad(r, readLight(in));
+            }
+            inter.restorePriority(pick(roads, in.readInt()), in.readDouble());
+            for (Road r : readRoadList(in, roads)) inter.addOutgoingRoad(r);
+            int configured = in.readInt();
+            for (int j = 0; j < configured; j++) {
+                Road incoming = roads[in.readInt()];
+                inter.setOutgoingOptions(incoming, readRoadList(in, roads));
+            }
+            int withRatios = in.readInt();
+            for (int j = 0; j < withRatios; j++) {
+                Road incoming = roads[in.readInt()];
+                double[][] ratios = new double[in.readInt()][in.readInt()];
+                for (double[] row : ratios) for (int k = 0; k < row.length; k++) row[k] = in.readDouble();
+                inter.setTurnRatios(incoming, ratios);
+            }
+        }
+
+        int nVehicles = in.readInt();
+        List<Vehicle> vehicles = sim.vehicleList();
+        Vehicle[] byIdx = new Vehicle[nVehicles];
+        for (int i = 0; i < nVehicles; i++) {
+            String id = in.readUTF();
+            Road road = pick(roads, in.readInt());
+            int lane = in.readInt();
+            double position = in.readDouble();
+            double speed = in.readDouble();
+            double waiting = in.readDouble();
+            double tripTime = in.readDouble();
+            double roadTime = in.readDouble();
+            double roadWaitStart = in.readDouble();
+            double spawnTime = in.readDouble();
+            Road origin = pick(roads, in.readInt());
+            Road lastRoad = pick(roads, in.readInt());
+            int roadsVisited = in.readInt();
+            int routeIndex = in.readInt();
+            List<Road> route = readRoadList(in, roads);
+            Vehicle v = new Vehicle(id, road, position, lane, route);
+            v.restoreState(speed, waiting, routeIndex);
+            v.restoreTrip(tripTime, roadTime, roadWaitStart);
+            v.restoreOrigin(spawnTime, origin, lastRoad, roadsVisited);
+            v.setMetrics(sim.getMetrics());
+            v.setWaitingTally(sim.getWaitingTally());
+            if (in.readBoolean()) v.setRandom(RandomStream.restore(in.readLong(), in.readLong()));
+            byIdx[i] = v;
+            vehicles.add(v);
+        }
+        for (Road r : roads) {
+            for (int lane = 0; lane < 2; lane++) {
+                int n = in.readInt();
+                for (int j = 0; j < n; j++) r.addVehicle(byIdx[in.readInt()]);
+            }
+        }
+
+        int completed = in.readInt();
+        long samples = in.readLong();
+        double waitingSum = in.readDouble();
+        double lastWaiting = in.readDouble();
+        sim.getMetrics().restoreCounters(completed, samples, waitingSum, lastWaiting);
+        double activeWaiting = in.readDouble();
+        LogHistogram tripWaiting = readHistogram(in);
+        LogHistogram tripTravel = readHistogram(in);
+        LogHistogram[] approachWaiting = new LogHistogram[roads.length];
+        LogHistogram[] approachTravel = new LogHistogram[roads.length];
+        for (int i = 0; i < roads.length; i++) {
+            if (!in.readBoolean()) continue;
+            approachWaiting[i] = readHistogram(in);
+            approachTravel[i] = readHistogram(in);
+        }
+        sim.getMetrics().restoreDistributions(activeWaiting, tripWaiting, tripTravel, approachWaiting, approachTravel);
+
+        Strategy strategy = readStrategy(in, inters, roads);
+        sim.restoreDemand(readDemand(in, roads));
+        return new Checkpoint(sim, strategy);
+    }
+
+    private static Demand readDemand(DataInputStream in, Road[] roads) throws IOException {
+        if (!in.readBoolean()) return null;
+        List<Road> origins = readRoadList(in, roads);
+        List<Road> dests = readRoadList(in, roads);
+        double[][] od = new double[origins.size()][dests.size()];
+        for (double[] row : od) for (int j = 0; j < row.length; j++) row[j] = in.readDouble();
+        double[] profile = new double[24];
+        for (int i = 0; i < profile.length; i++) profile[i] = in.readDouble();
+        Demand d = new Demand(origins, dests, od, profile);
+        RandomStream rs = in.readBoolean() ? RandomStream.restore(in.readLong(), in.readLong()) : null;
+        d.restore(rs, in.readLong(), in.readLong());
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) d.restoreArrival(in.readDouble(), in.readInt(), in.readInt(), in.readBoolean());
+        for (int o = 0; o < origins.size(); o++) {
+            int waiting = in.readInt();
+            for (int i = 0; i < waiting; i++) d.restoreWaiting(in.readDouble(), o, in.readInt());
+        }
+        return d;
+    }
+
+    private static LogHistogram readHistogram(DataInputStream in) throws IOException {
+        long[] buckets = new long[in.readInt()];
+        int used = in.readInt();
+        for (int i = 0; i < used; i++) buckets[in.readInt()] = in.readLong();
+        return LogHistogram.restore(Metrics.HISTOGRAM_UNIT, buckets, in.readDouble(), in.readDouble(), in.readDouble());
+    }
+
+    private static TrafficLight readLight(DataInputStream in) throws IOException {
+        TrafficLight light = new TrafficLight(in.readDouble(), in.readDouble(), in.readDouble());
+        int color = in.readByte();
+        if (color < 0) {
+            light.restoreState(null);
+            return light;
+        }
+        double duration = in.readDouble();
+        double elapsed = in.readDouble();
+        TrafficLightState st;
+        switch (LightColor.values()[color]) {
+            case GREEN: st = new GreenState(duration); break;
+            case YELLOW: st = new YellowState(duration); break;
+            default: st = new RedState(duration); break;
+        }
+        st.setElapsed(elapsed);
+        light.restoreState(st);
+        return light;
+    }
+
+    private static Strategy readStrategy(DataInputStream in, Intersection[] inters, Road[] roads) throws IOException {
+        byte kind = in.readByte();
+        switch (kind) {
+            case STRATEGY_NONE:
+                return null;
+            case STRATEGY_FIXED: {
+                FixedCycle f = new FixedCycle(in.readDouble());
+                f.restore(in.readDouble(), in.readInt());
+                return f;
+            }
+            case STRATEGY_ADAPTIVE: {
+                AdaptiveCycle a = new AdaptiveCycle(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+                int n = in.readInt();
+                for (int i = 0; i < n; i++) {
+                    Intersection inter = inters[in.readInt()];
+                    double elapsed = in.readDouble();
+                    a.restoreState(inter.getIndex(), pick(roads, in.readInt()), elapsed);
+                }
+                return a;
+            }
+            case STRATEGY_SIGNAL_PLAN: {
+                SignalPlan s = new SignalPlan();
+                int n = in.readInt();
+                for (int i = 0; i < n; i++) {
+                    if (!in.readBoolean()) continue;
+                    double offset = in.readDouble();
+                    double clock = in.readDouble();
+                    int lastPhase = in.readInt();
+                    double[] splits = new double[in.readInt()];
+                    Road[][] phaseRoads = new Road[splits.length][];
+                    for (int p = 0; p < splits.length; p++) {
+                        splits[p] = in.readDouble();
+                        phaseRoads[p] = new Road[in.readInt()];
+                        for (int k = 0; k < phaseRoads[p].length; k++) phaseRoads[p][k] = roads[in.readInt()];
+                    }
+                    s.addPlan(inters[i], offset, splits, phaseRoads);
+                    s.restoreState(inters[i].getIndex(), clock, lastPhase);
+                }
+                return s;
+            }
+            case STRATEGY_MAX_PRESSURE: {
+                MaxPressure m = new MaxPressure(in.readDouble());
+                int n = in.readInt();
+                for (int i = 0; i < n; i++) {
+                    int cur = in.readInt();
+                    int next = in.readInt();
+                    m.restoreState(inters[i].getIndex(), cur, next, in.readDouble());
+                }
+                return m;
+            }
+            default:
+                throw new IOException("Unknown strategy type " + kind);
+        }
+    }
+
+    private static List<Road> readRoadList(DataInputStream in, Road[] roads) throws IOException {
+        int n = in.readInt();
+        if (n < 0) return null;
+        List<Road> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) list.add(roads[in.readInt()]);
+        return list;
+    }
+
+    private static <T> T pick(T[] arr, int idx) {
+        return idx < 0 ? null : arr[idx];
+    }
+}
\ No newline at end of file
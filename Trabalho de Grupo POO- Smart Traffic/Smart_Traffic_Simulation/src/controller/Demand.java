@@ -0,0 +1,414 @@
+package controller;
+
+import model.Road;
+import util.RandomStream;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Scheduled traffic demand: origin-destination matrix scaled by a 24-hour profile, or a trip file.
+ *
+ * Future arrivals sit in a time-ordered queue (ties kept in scheduling order); Simulation.tick only
+ * looks at its head, so a tick with no arrival due and no vehicle waiting costs two comparisons.
+ * Poisson arrivals are generated by thinning (one scheduled arrival per origin, drawn from the
+ * simulation's random stream), so a day of demand is never generated ahead of time.
+ *
+ * A due arrival joins the back of its origin's entry line (a FIFO), and each tick only the head of
+ * every non-empty line tries to enter, once. While an entry has no room its line grows by the
+ * demand the road cannot absorb, the vehicles that would queue outside the network, and trips
+ * leave in the order they arrived. The next arrival of an origin is drawn as soon as one is due,
+ * so blocked entries never lower the demand.
+ *
+ * Vehicles get the shortest route (by length) from origin to destination; routes are computed once
+ * per OD pair. A destination of -1 means "no route" (turns are chosen at each intersection).
+ */
+public class Demand {
+    public static final double ENTRY_POSITION = 5.0;  // meters from the start where vehicles appear
+    public static final double ENTRY_CLEARANCE = 12.0; // free meters needed at the start of the lane
+
+    /** hourly multipliers of a weekday with morning and evening peaks (1.0 = OD matrix rate) */
+    public static final double[] WEEKDAY_PROFILE = {
+            0.10, 0.06, 0.05, 0.05, 0.10, 0.30, 0.70, 1.00, 0.95, 0.70, 0.60, 0.65,
+            0.70, 0.65, 0.65, 0.70, 0.85, 1.00, 0.95, 0.70, 0.50, 0.35, 0.25, 0.15};
+
+    /** flat profile: the OD matrix rate all day */
+    public static final double[] FLAT_PROFILE = {
+            1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1};
+
+    /**
+     * One scheduled vehicle.
+     */
+    public static final class Arrival implements Comparable<Arrival> {
+        private final double time;
+        private final int origin;
+        private final int destination; // -1: no route
+        private boolean generated; // Poisson arrival that has not scheduled the next one of its origin yet
+        private final long seq;    // scheduling order, breaks ties between equal times
+
+        Arrival(double time, int origin, int destination, boolean generated, long seq) {
+            this.time = time;
+            this.origin = origin;
+            this.destination = destination;
+            this.generated = generated;
+            this.seq = seq;
+        }
+
+        public double getTime() { return time; }
+        public int getOrigin() { return origin; }
+        public int getDestination() { return destination; }
+        boolean isGenerated() { return generated; }
+
+        @Override
+        public int compareTo(Arrival o) {
+            int c = Double.compare(time, o.time);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+    }
+
+    private final Road[] origins;
+    private final Road[] destinations;
+    private final double[][] od;        // vehicles per hour, origin x destination
+    private final double[] originRate;  // row sums
+    private final double[] profile;     // 24 hourly multipliers
+    private final double profileMax;
+    private final List<Road>[][] routes; // per OD pair, null if unreachable
+    private final PriorityQueue<Arrival> queue = new PriorityQueue<>(); // not yet due
+    private final ArrayDeque<Arrival>[] lines; // per origin: due, waiting to enter, oldest first
+    private int waiting;                       // arrivals in all lines
+    private long nextSeq;
+    private RandomStream rng;
+
+    private long spawned;
+    private long retries; // entry attempts that found no room
+
+    /**
+     * @param origins      roads where vehicles enter (lane 0)
+     * @param destinations roads the OD columns refer to (usually exit roads)
+     * @param od           vehicles per hour from origins[i] to destinations[j]
+     * @param profile      24 hourly multipliers of the OD rates (e.g. WEEKDAY_PROFILE)
+     */
+    public Demand(List<Road> origins, List<Road> destinations, double[][] od, double[] profile) {
+        if (od.length != origins.size()) throw new IllegalArgumentException("one OD row per origin");
+        if (profile.length != 24) throw new IllegalArgumentException("profile must have 24 hourly values");
+        this.origins = origins.toArray(new Road[0]);
+        this.destinations = destinations.toArray(new Road[0]);
+        this.od = new double[od.length][];
+        this.originRate = new double[od.length];
+        for (int i = 0; i < od.length; i++) {
+            if (od[i].length != destinations.size()) throw new IllegalArgumentException("one OD column per destination");
+            this.od[i] = od[i].clone();
+            for (double r : od[i]) originRate[i] += r;
+        }
+        this.profile = profile.clone();
+        double max = 0.0;
+        for (double p : profile) max = Math.max(max, p);
+        this.profileMax = max;
+
+        this.lines = newLines(this.origins.length);
+        this.routes = newRouteTable(this.origins.length, this.destinations.length);
+        for (int o = 0; o < this.origins.length; o++) {
+            Map<Road, Road> previous = shortestPaths(this.origins[o]);
+            for (int d = 0; d < this.destinations.length; d++) {
+                routes[o][d] = buildRoute(previous, this.origins[o], this.destinations[d]);
+                if (routes[o][d] == null && this.od[o][d] > 0) {
+                    throw new IllegalArgumentException("no route from " + this.origins[o].getId() + " to " + this.destinations[d].getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Trip-file demand only (no generated arrivals); add trips with schedule or loadTrips.
+     */
+    public Demand(List<Road> origins, List<Road> destinations) {
+        this(origins, destinations, new double[origins.size()][destinations.size()], FLAT_PROFILE);
+    }
+
+    /**
+     * Uniform OD between every origin and every reachable destination, total vehPerHour per origin.
+     */
+    public static Demand uniform(List<Road> origins, List<Road> destinations, double vehPerHour, double[] profile) {
+        Demand probe = new Demand(origins, destinations);
+        double[][] od = new double[origins.size()][destinations.size()];
+        for (int o = 0; o < od.length; o++) {
+            int reachable = 0;
+            for (int d = 0; d < od[o].length; d++) if (probe.routes[o][d] != null) reachable++;
+            for (int d = 0; d < od[o].length; d++) if (probe.routes[o][d] != null) od[o][d] = vehPerHour / reachable;
+        }
+        return new Demand(origins, destinations, od, profile);
+    }
+
+    // ---------- scheduling ----------
+
+    /**
+     * Called by Simulation.setDemand: take a random stream and schedule the first arrival of each origin.
+     */
+    void start(RandomStream rng, double now) {
+        this.rng = rng;
+        for (int o = 0; o < origins.length; o++) scheduleNext(o, now);
+    }
+
+    /**
+     * Add one trip (destination -1 = no route).
+     */
+    public synchronized void schedule(double time, int origin, int destination) {
+        queue.add(new Arrival(time, origin, destination, false, nextSeq++));
+    }
+
+    /**
+     * Move every arrival due at or before now to its origin's line, then let the head of each line
+     * try to enter once. Called once per tick by Simulation.
+     */
+    synchronized void release(Simulation sim, double now) {
+        Arrival a;
+        while ((a = queue.peek()) != null && a.time <= now) {
+            queue.poll();
+            if (a.generated) {
+                // the origin's Poisson process goes on from the due time, whether or not this one spawns
+                a.generated = false;
+                scheduleNext(a.origin, a.time);
+            }
+            lines[a.origin].add(a);
+            waiting++;
+        }
+        if (waiting == 0) return;
+        for (int o = 0; o < lines.length; o++) {
+            Arrival head = lines[o].peek();
+            if (head == null) continue;
+            List<Road> route = head.destination < 0 ? null : routes[o][head.destination];
+            if (sim.spawn(origins[o], ENTRY_POSITION, ENTRY_CLEARANCE, route)) {
+                lines[o].poll();
+                waiting--;
+                spawned++;
+            } else {
+                retries++; // entry blocked: the head keeps its place and tries again next tick
+            }
+        }
+    }
+
+    /**
+     * Next Poisson arrival of an origin after t, by thinning against the profile's peak rate.
+     */
+    private void scheduleNext(int origin, double t) {
+        double peak = originRate[origin] * profileMax / 3600.0; // vehicles per second
+        if (peak <= 0.0 || rng == null) return;
+        for (int guard = 0; guard < 100000; guard++) {
+            t += -Math.log(1.0 - rng.nextDouble()) / peak;
+            if (rng.nextDouble() * profileMax <= profileAt(t)) {
+                queue.add(new Arrival(t, origin, pickDestination(origin), true, nextSeq++));
+                return;
+            }
+        }
+    }
+
+    private int pickDestination(int origin) {
+        double r = rng.nextDouble() * originRate[origin];
+        double[] row = od[origin];
+        for (int d = 0; d < row.length; d++) {
+            r -= row[d];
+            if (r < 0) return d;
+        }
+        for (int d = row.length - 1; d >= 0; d--) if (row[d] > 0) return d;
+        return -1;
+    }
+
+    /**
+     * Profile multiplier at simulation time t (seconds; day 0 starts at midnight), linear between hours.
+     */
+    public double profileAt(double t) {
+        double h = (t / 3600.0) % 24.0;
+        if (h < 0) h += 24.0;
+        int i = (int) h;
+        double f = h - i;
+        return profile[i] * (1.0 - f) + profile[(i + 1) % 24] * f;
+    }
+
+    /**
+     * Trips not spawned yet: scheduled ones plus those waiting at an entry.
+     */
+    public synchronized int getPendingCount() { return queue.size() + waiting; }
+
+    /**
+     * Trips that are due but waiting for room at their origin's entry.
+     */
+    public synchronized int getWaitingCount() { return waiting; }
+
+    public synchronized long getSpawned() { return spawned; }
+    public synchronized long getRetries() { return retries; }
+
+    /**
+     * Route from origin o to destination d (roads after the origin), or null if unreachable.
+     */
+    public List<Road> getRoute(int o, int d) { return routes[o][d]; }
+
+    // ---------- checkpoint support (package-private) ----------
+
+    Road[] getOrigins() { return origins; }
+    Road[] getDestinations() { return destinations; }
+    double[][] getOd() { return od; }
+    double[] getProfile() { return profile; }
+    RandomStream getRandom() { return rng; }
+
+    // scheduled arrivals, in the order they become due
+    synchronized List<Arrival> pendingArrivals() {
+        List<Arrival> out = new ArrayList<>(queue);
+        Collections.sort(out);
+        return out;
+    }
+
+    // arrivals waiting at the entry of origin o, head first
+    synchronized List<Arrival> waitingArrivals(int o) {
+        return new ArrayList<>(lines[o]);
+    }
+
+    synchronized void restore(RandomStream rng, long spawned, long retries) {
+        this.rng = rng;
+        this.spawned = spawned;
+        this.retries = retries;
+    }
+
+    // restore in pendingArrivals order, so ties keep their order
+    synchronized void restoreArrival(double time, int origin, int destination, boolean generated) {
+        queue.add(new Arrival(time, origin, destination, generated, nextSeq++));
+    }
+
+    // append to the back of the origin's line
+    synchronized void restoreWaiting(double time, int origin, int destination) {
+        lines[origin].add(new Arrival(time, origin, destination, false, nextSeq++));
+        waiting++;
+    }
+
+    // ---------- trip files ----------
+
+    /**
+     * Load trips from CSV: time,originRoadId[,destinationRoadId] (header line optional).
+     */
+    public synchronized void loadTrips(Path path) throws IOException {
+        Map<String, Integer> originIdx = index(origins);
+        Map<String, Integer> destIdx = index(destinations);
+        try (BufferedReader r = Files.newBufferedReader(path)) {
+            String line;
+            int lineNo = 0;
+            while ((line = r.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith("time")) continue;
+                String[] f = line.split(",");
+                try {
+                    double time = Double.parseDouble(f[0].trim());
+                    Integer o = originIdx.get(f[1].trim());
+                    if (o == null) throw new IOException("unknown origin road " + f[1].trim());
+                    int d = -1;
+                    if (f.length > 2 && !f[2].trim().isEmpty()) {
+                        Integer di = destIdx.get(f[2].trim());
+                        if (di == null || routes[o][di] == null) throw new IOException("unknown or unreachable destination " + f[2].trim());
+                        d = di;
+                    }
+                    queue.add(new Arrival(time, o, d, false, nextSeq++));
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IOException("bad trip at line " + lineNo + ": " + line, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the pending trips, waiting ones included, as a trip file (same format as loadTrips).
+     */
+    public synchronized void exportTrips(Path path) throws IOException {
+        List<Arrival> sorted = new ArrayList<>(queue);
+        for (ArrayDeque<Arrival> line : lines) sorted.addAll(line);
+        Collections.sort(sorted);
+        try (BufferedWriter w = Files.newBufferedWriter(path)) {
+            w.write("time,origin,destination\n");
+            for (Arrival a : sorted) {
+                w.write(String.format(Locale.ROOT, "%.3f,%s,%s%n", a.time, origins[a.origin].getId(),
+                        a.destination < 0 ? "" : destinations[a.destination].getId()));
+            }
+        }
+    }
+
+    private static Map<String, Integer> index(Road[] roads) {
+        Map<String, Integer> m = new HashMap<>();
+        for (int i = 0; i < roads.length; i++) m.put(roads[i].getId(), i);
+        return m;
+    }
+
+    // ---------- routing ----------
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ArrayDeque<Arrival>[] newLines(int origins) {
+        ArrayDeque<Arrival>[] lines = new ArrayDeque[origins];
+        for (int o = 0; o < origins; o++) lines[o] = new ArrayDeque<>();
+        return lines;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<Road>[][] newRouteTable(int origins, int destinations) {
+        return new List[origins][destinations];
+    }
+
+    /**
+     * Dijkstra over roads (edge = turn option at the road's downstream intersection, cost = length).
+     * Returns the predecessor of every reached road.
+     */
+    private static Map<Road, Road> shortestPaths(Road origin) {
+        Map<Road, Road> previous = new IdentityHashMap<>();
+        Map<Road, Double> dist = new IdentityHashMap<>();
+        PriorityQueue<PathEntry> pq = new PriorityQueue<>();
+        dist.put(origin, 0.0);
+        pq.add(new PathEntry(0.0, origin));
+        while (!pq.isEmpty()) {
+            PathEntry e = pq.poll();
+            double d = e.dist;
+            Road r = e.road;
+            if (d > dist.get(r)) continue;
+            if (r.getTo() == null) continue;
+            for (Road next : r.getTo().getOutgoingOptions(r)) {
+                double nd = d + next.getLength();
+                Double old = dist.get(next);
+                if (old == null || nd < old) {
+                    dist.put(next, nd);
+                    previous.put(next, r);
+                    pq.add(new PathEntry(nd, next));
+                }
+            }
+        }
+        return previous;
+    }
+
+    private static final class PathEntry implements Comparable<PathEntry> {
+        final double dist;
+        final Road road;
+
+        PathEntry(double dist, Road road) {
+            this.dist = dist;
+            this.road = road;
+        }
+
+        @Override
+        public int compareTo(PathEntry o) { return Double.compare(dist, o.dist); }
+    }
+
+    private static List<Road> buildRoute(Map<Road, Road> previous, Road origin, Road destination) {
+        if (destination == origin) return Collections.emptyList();
+        if (!previous.containsKey(destination)) return null;
+        List<Road> route = new ArrayList<>();
+        for (Road r = destination; r != origin; r = previous.get(r)) route.add(r);
+        Collections.reverse(route);
+        return Collections.unmodifiableList(route);
+    }
+}
\ No newline at end of file
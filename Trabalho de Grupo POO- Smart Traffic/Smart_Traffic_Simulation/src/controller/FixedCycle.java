@@ -2,8 +2,6 @@ package controller;
 
 import model.Intersection;
 import model.TrafficLight;
-import model.state.GreenState;
-import model.state.RedState;
 
 /**
  * FixedCycle strategy adapted to the State pattern.
@@ -18,28 +16,35 @@ public class FixedCycle implements Strategy {
         this.switchInterval = switchInterval;
     }
 
+    double getSwitchInterval() { return switchInterval; }
+    double getTimer() { return timer; }
+    int getCurrentIndex() { return currentIndex; }
+
+    void restore(double timer, int currentIndex) {
+        this.timer = timer;
+        this.currentIndex = currentIndex;
+    }
+
     @Override
     public void apply(double dt, Intersection intersection) {
         timer += dt;
         if (timer >= switchInterval) {
             // rotate greens
             timer = 0;
-            TrafficLight[] arr = intersection.getLights().values().toArray(new TrafficLight[0]);
-            if (arr.length == 0) return;
+            int n = intersection.getApproachCount();
+            if (n == 0) return;
 
             // set current to red (use its red duration)
-            TrafficLight prev = arr[currentIndex];
-            prev.setState(new RedState(prev.getRedDuration()));
+            TrafficLight prev = intersection.getApproachLight(currentIndex);
+            prev.setRed(prev.getRedDuration());
 
             // advance index and set next to green (use its green duration)
-            currentIndex = (currentIndex + 1) % arr.length;
-            TrafficLight next = arr[currentIndex];
-            next.setState(new GreenState(next.getGreenDuration()));
+            currentIndex = (currentIndex + 1) % n;
+            TrafficLight next = intersection.getApproachLight(currentIndex);
+            next.setGreen(next.getGreenDuration());
         }
 
         // update all lights' internal timers
-        for (TrafficLight t : intersection.getLights().values()) {
-            t.update(dt);
-        }
+        intersection.updateLights(dt);
     }
 }
\ No newline at end of file
@@ -0,0 +1,195 @@
+package controller;
+
+import model.Intersection;
+import model.Road;
+import model.TrafficLight;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Max-pressure control: after a minimum green, switch to the approach whose pressure
+ * (vehicles queued on it minus the mean queue on the roads it feeds) is largest.
+ *
+ * Queues come from Road.getHaltedCount(), kept up to date by the vehicles themselves, so a decision
+ * costs O(approaches x turn options) with no scans of the road lists. Topology (approaches, their
+ * lights and downstream roads) is cached per Intersection.getIndex() and rebuilt when the slot is
+ * used by another Intersection (e.g. a new Simulation) or Intersection.getTopologyVersion() changes.
+ * The strategy owns light timing: lights are not advanced by their own timers, a switch goes through
+ * the current approach's yellow interval.
+ */
+public class MaxPressure implements Strategy {
+    private final double minGreen; // seconds an approach keeps green before it can lose it
+
+    // per intersection (dense index)
+    private int[] current = new int[0];      // approach holding green/yellow, -1 before the first decision
+    private int[] next = new int[0];         // approach waiting for the yellow to end, -1 if none
+    private double[] elapsed = new double[0]; // time in the current green (or yellow)
+
+    // cached topology per intersection, and the intersection/version it was built from
+    private Intersection[] owners = new Intersection[0];
+    private int[] versions = new int[0];
+    private Road[][] approaches = new Road[0][];
+    private TrafficLight[][] lights = new TrafficLight[0][];
+    private Road[][][] downstream = new Road[0][][];
+
+    public MaxPressure(double minGreen) {
+        this.minGreen = minGreen;
+    }
+
+    // ---------- checkpoint support (package-private) ----------
+
+    double getMinGreen() { return minGreen; }
+    int getStateCount() { return current.length; }
+    int getCurrent(int index) { return current[index]; }
+    int getNext(int index) { return next[index]; }
+    double getElapsed(int index) { return elapsed[index]; }
+
+    void restoreState(int index, int currentApproach, int nextApproach, double elapsedTime) {
+        ensureCapacity(index + 1);
+        current[index] = currentApproach;
+        next[index] = nextApproach;
+        elapsed[index] = elapsedTime;
+    }
+
+    @Override
+    public void applyAll(double simTime, double dt, List<Intersection> intersections) {
+        int maxIndex = -1;
+        for (int i = 0; i < intersections.size(); i++) maxIndex = Math.max(maxIndex, intersections.get(i).getIndex());
+        ensureCapacity(maxIndex + 1);
+        for (int i = 0; i < intersections.size(); i++) apply(dt, intersections.get(i));
+    }
+
+    @Override
+    public void apply(double dt, Intersection intersection) {
+        int idx = intersection.getIndex();
+        if (idx < 0) throw new IllegalArgumentException("intersection " + intersection.getId() + " has no index; add it to the Simulation first");
+        if (idx >= current.length) ensureCapacity(idx + 1);
+        if (owners[idx] != intersection || versions[idx] != intersection.getTopologyVersion()) compile(idx, intersection);
+
+        Road[] roads = approaches[idx];
+        TrafficLight[] ls = lights[idx];
+        if (roads.length == 0) return;
+        elapsed[idx] += dt;
+
+        // preemption already set the lights: follow it and restart the hold
+        if (intersection.hasPriority()) {
+            int p = indexOf(roads, intersection.getPriorityRoad());
+            if (p >= 0) {
+                current[idx] = p;
+                next[idx] = -1;
+                elapsed[idx] = 0.0;
+            }
+            return;
+        }
+
+        int cur = current[idx];
+
+        // finishing a yellow interval: hand green to the chosen approach
+        if (next[idx] >= 0) {
+            if (elapsed[idx] >= ls[cur].getYellowDuration()) {
+                ls[cur].setRed(ls[cur].getRedDuration());
+                int n = next[idx];
+                ls[n].setGreen(ls[n].getGreenDuration());
+                current[idx] = n;
+                next[idx] = -1;
+                elapsed[idx] = 0.0;
+            }
+            return;
+        }
+
+        // pick the approach with the largest pressure
+        Road[][] down = downstream[idx];
+        int best = 0;
+        double bestPressure = pressure(roads[0], down[0]);
+        for (int a = 1; a < roads.length; a++) {
+            double p = pressure(roads[a], down[a]);
+            if (p > bestPressure) {
+                bestPressure = p;
+                best = a;
+            }
+        }
+
+        if (cur < 0) {
+            // first decision: green for the best approach, red for all others
+            for (int a = 0; a < ls.length; a++) {
+                if (a == best) ls[a].setGreen(ls[a].getGreenDuration());
+                else ls[a].setRed(ls[a].getRedDuration());
+            }
+            current[idx] = best;
+            elapsed[idx] = 0.0;
+            return;
+        }
+
+        if (best == cur || elapsed[idx] < minGreen) return;
+        if (bestPressure <= pressure(roads[cur], down[cur])) return;
+
+        ls[cur].setYellow(ls[cur].getYellowDuration());
+        next[idx] = best;
+        elapsed[idx] = 0.0;
+    }
+
+    /**
+     * Upstream queue minus the mean queue of the downstream roads it can turn into.
+     */
+    private static double pressure(Road in, Road[] out) {
+        double p = in.getHaltedCount();
+        if (out.length > 0) {
+            int sum = 0;
+            for (Road o : out) sum += o.getHaltedCount();
+            p -= (double) sum / out.length;
+        }
+        return p;
+    }
+
+    private synchronized void compile(int idx, Intersection intersection) {
+        if (owners[idx] != null && owners[idx] != intersection) {
+            // another world's intersection held this slot: its decisions do not apply here
+            current[idx] = -1;
+            next[idx] = -1;
+            elapsed[idx] = 0.0;
+        }
+        int version = intersection.getTopologyVersion(); // read before the lights, so a concurrent change recompiles
+        Map<Road, TrafficLight> map = intersection.getLights();
+        List<Road> roads = new ArrayList<>(map.keySet());
+        Road[] rs = roads.toArray(new Road[0]);
+        TrafficLight[] ls = new TrafficLight[rs.length];
+        Road[][] down = new Road[rs.length][];
+        for (int a = 0; a < rs.length; a++) {
+            ls[a] = map.get(rs[a]);
+            down[a] = intersection.getOutgoingOptions(rs[a]).toArray(new Road[0]);
+        }
+        lights[idx] = ls;
+        downstream[idx] = down;
+        approaches[idx] = rs;
+        owners[idx] = intersection;
+        versions[idx] = version;
+        if (current[idx] >= rs.length || next[idx] >= rs.length) {
+            current[idx] = -1;
+            next[idx] = -1;
+        }
+    }
+
+    private static int indexOf(Road[] roads, Road r) {
+        for (int i = 0; i < roads.length; i++) if (roads[i] == r) return i;
+        return -1;
+    }
+
+    private synchronized void ensureCapacity(int n) {
+        if (current.length >= n) return;
+        int old = current.length;
+        int cap = Math.max(n, old * 2);
+        current = Arrays.copyOf(current, cap);
+        next = Arrays.copyOf(next, cap);
+        elapsed = Arrays.copyOf(elapsed, cap);
+        owners = Arrays.copyOf(owners, cap);
+        versions = Arrays.copyOf(versions, cap);
+        approaches = Arrays.copyOf(approaches, cap);
+        lights = Arrays.copyOf(lights, cap);
+        downstream = Arrays.copyOf(downstream, cap);
+        Arrays.fill(current, old, cap, -1);
+        Arrays.fill(next, old, cap, -1);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,247 @@
+package controller;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * Headless parameter sweep for signal strategies.
+ * Every candidate gets its own Simulation and Strategy instance and runs on a worker thread,
+ * so one sweep uses all cores. Results are ranked by mean waiting time, then throughput.
+ * The world supplier receives the sweep seed, so every candidate sees the same demand.
+ *
+ * Usage: java controller.ParameterSweep [grid|random N] [durationSeconds] [out.csv] [seed]
+ */
+public class ParameterSweep {
+
+    /**
+     * One configuration to evaluate. The supplier must return a fresh strategy each call
+     * (FixedCycle/AdaptiveCycle keep internal state).
+     */
+    public static class Candidate {
+        private final String label;
+        private final Supplier<Strategy> strategy;
+
+        public Candidate(String label, Supplier<Strategy> strategy) {
+            this.label = label;
+            this.strategy = strategy;
+        }
+
+        public String getLabel() { return label; }
+        public Strategy newStrategy() { return strategy.get(); }
+    }
+
+    /**
+     * Aggregated outcome of one run (values come from the run's Metrics).
+     */
+    public static class Result {
+        private final String label;
+        private final double meanWaiting;
+        private final int completed;
+        private final double throughputPerHour;
+
+        public Result(String label, double meanWaiting, int completed, double throughputPerHour) {
+            this.label = label;
+            this.meanWaiting = meanWaiting;
+            this.completed = completed;
+            this.throughputPerHour = throughputPerHour;
+        }
+
+        public String getLabel() { return label; }
+        public double getMeanWaiting() { return meanWaiting; }
+        public int getCompleted() { return completed; }
+        public double getThroughputPerHour() { return throughputPerHour; }
+    }
+
+    /** lower wait first, higher throughput breaks ties */
+    public static final Comparator<Result> RANKING = Comparator
+            .comparingDouble(Result::getMeanWaiting)
+            .thenComparing(Comparator.comparingDouble(Result::getThroughputPerHour).reversed());
+
+    private final LongFunction<Simulation> world;
+    private final long seed;
+    private final double duration;
+    private final double dt;
+    private final int threads;
+
+    /**
+     * @param world    builds a fresh world for each run from a seed (e.g. Scenarios::buildCross)
+     * @param seed     seed passed to every run
+     * @param duration simulated seconds per run
+     * @param dt       fixed step in seconds
+     * @param threads  worker threads (use availableProcessors for a full machine)
+     */
+    public ParameterSweep(LongFunction<Simulation> world, long seed, double duration, double dt, int threads) {
+        this.world = world;
+        this.seed = seed;
+        this.duration = duration;
+        this.dt = dt;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Run all candidates concurrently and return the results ranked.
+     */
+    public List<Result> run(List<Candidate> candidates) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Result>> futures = new ArrayList<>(candidates.size());
+            for (Candidate c : candidates) {
+                futures.add(pool.submit(() -> runOne(c)));
+            }
+            List<Result> results = new ArrayList<>(candidates.size());
+            for (Future<Result> f : futures) {
+                try {
+                    results.add(f.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Sweep run failed", e.getCause());
+                }
+            }
+            results.sort(RANKING);
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Result runOne(Candidate c) {
+        Simulation sim = world.apply(seed);
+        sim.getMetrics().setRecordSnapshots(false); // only running aggregates are needed here
+        Strategy strategy = c.newStrategy();
+        long steps = Math.round(duration / dt);
+        for (long i = 0; i < steps; i++) {
+            sim.tick(dt, strategy);
+        }
+        int completed = sim.getMetrics().getCompleted();
+        double hours = sim.getSimTime() / 3600.0;
+        double throughput = hours > 0 ? completed / hours : 0.0;
+        return new Result(c.getLabel(), sim.getMetrics().getMeanAvgWaiting(), completed, throughput);
+    }
+
+    // ---------- search spaces ----------
+
+    /**
+     * Full grid over AdaptiveCycle(baseGreen, kPerVehicle, maxGreen, minGreenHold).
+     */
+    public static List<Candidate> adaptiveGrid(double[] baseGreen, double[] kPerVehicle, double[] maxGreen, double[] minGreenHold) {
+        List<Candidate> out = new ArrayList<>();
+        for (double b : baseGreen) {
+            for (double k : kPerVehicle) {
+                for (double m : maxGreen) {
+                    if (m < b) continue; // cap below the base makes no sense
+                    for (double h : minGreenHold) {
+                        out.add(adaptive(b, k, m, h));
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Grid over FixedCycle(switchInterval).
+     */
+    public static List<Candidate> fixedGrid(double[] switchInterval) {
+        List<Candidate> out = new ArrayList<>();
+        for (double s : switchInterval) {
+            out.add(new Candidate(String.format(Locale.ROOT, "Fixed(%.1f)", s), () -> new FixedCycle(s)));
+        }
+        return out;
+    }
+
+    /**
+     * Uniform random search over AdaptiveCycle parameters; ranges are {min, max}.
+     */
+    public static List<Candidate> adaptiveRandom(int count, long seed, double[] baseGreen, double[] kPerVehicle,
+                                                 double[] maxGreen, double[] minGreenHold) {
+        Random rnd = new Random(seed);
+        List<Candidate> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double b = uniform(rnd, baseGreen);
+            double k = uniform(rnd, kPerVehicle);
+            double m = Math.max(b, uniform(rnd, maxGreen));
+            double h = uniform(rnd, minGreenHold);
+            out.add(adaptive(b, k, m, h));
+        }
+        return out;
+    }
+
+    private static Candidate adaptive(double b, double k, double m, double h) {
+        String label = String.format(Locale.ROOT, "Adaptive(%.2f, %.2f, %.2f, %.2f)", b, k, m, h);
+        return new Candidate(label, () -> new AdaptiveCycle(b, k, m, h));
+    }
+
+    private static double uniform(Random rnd, double[] range) {
+        return range[0] + rnd.nextDouble() * (range[1] - range[0]);
+    }
+
+    // ---------- output ----------
+
+    public static String formatTable(List<Result> results) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-5s %-36s %12s %10s %12s%n", "rank", "strategy", "avgWait(s)", "completed", "veh/hour"));
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            sb.append(String.format(Locale.ROOT, "%-5d %-36s %12.3f %10d %12.1f%n",
+                    i + 1, r.getLabel(), r.getMeanWaiting(), r.getCompleted(), r.getThroughputPerHour()));
+        }
+        return sb.toString();
+    }
+
+    public static void exportCsv(List<Result> results, Path path) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(path)) {
+            w.write("rank,strategy,avgWaiting,completed,throughputPerHour\n");
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                w.write((i + 1) + ",\"" + r.getLabel() + "\"," + r.getMeanWaiting() + ","
+                        + r.getCompleted() + "," + r.getThroughputPerHour() + "\n");
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "grid";
+        int argIdx = 1;
+        List<Candidate> candidates;
+        if ("random".equals(mode)) {
+            int n = args.length > argIdx ? Integer.parseInt(args[argIdx++]) : 1000;
+            candidates = adaptiveRandom(n, 42L,
+                    new double[]{2, 10}, new double[]{0.2, 3}, new double[]{10, 40}, new double[]{1, 8});
+        } else {
+            candidates = adaptiveGrid(
+                    new double[]{3, 5, 7, 9}, new double[]{0.5, 1.0, 1.5, 2.0},
+                    new double[]{15, 20, 30}, new double[]{2, 3, 5});
+            candidates.addAll(fixedGrid(new double[]{4, 6, 8, 10, 12, 15, 20}));
+        }
+        double duration = args.length > argIdx ? Double.parseDouble(args[argIdx++]) : 600.0;
+        Path out = args.length > argIdx ? Paths.get(args[argIdx++]) : null;
+        long seed = args.length > argIdx ? Long.parseLong(args[argIdx]) : 1L;
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ParameterSweep sweep = new ParameterSweep(Scenarios::buildCross, seed, duration, 0.05, threads);
+        long t0 = System.nanoTime();
+        List<Result> results = sweep.run(candidates);
+        double secs = (System.nanoTime() - t0) / 1e9;
+
+        System.out.print(formatTable(results));
+        System.out.printf(Locale.ROOT, "%d runs x %.0f s simulated on %d threads in %.1f s%n",
+                results.size(), duration, threads, secs);
+        if (out != null) {
+            exportCsv(results, out);
+            System.out.println("Wrote " + out.toAbsolutePath());
+        }
+    }
+}
\ No newline at end of file
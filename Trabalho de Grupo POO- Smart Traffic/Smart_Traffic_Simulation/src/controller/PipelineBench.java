@@ -0,0 +1,101 @@
+package controller;
+
+import util.EventPublisher;
+import util.LiveMetrics;
+import util.Metrics;
+import util.TelemetryRing;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.Flow;
+
+/**
+ * Compares Simulation.tick with the end-of-tick bookkeeping inline and on the pipeline stage
+ * (Simulation.setPipelined). Both runs use the sample cross with MaxPressure, the same seed, snapshots
+ * on, a telemetry ring, live metrics and one tick event subscriber, so the bookkeeping has real work
+ * to do. Prints wall time per tick for each mode and checks that both produced the same metrics.
+ *
+ * The stage is meant to run on a spare core: with one available processor the two threads share it,
+ * and whatever difference remains comes from batching the bookkeeping, not from running in parallel.
+ *
+ * Usage: java controller.PipelineBench [warmupTicks] [measuredTicks] [rounds]
+ */
+public class PipelineBench {
+
+    public static void main(String[] args) throws Exception {
+        int warmup = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int measured = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        System.out.println("available processors: " + Runtime.getRuntime().availableProcessors());
+        boolean ok = true;
+        for (int r = 0; r < rounds; r++) {
+            Result inline = run(false, warmup, measured);
+            Result pipelined = run(true, warmup, measured);
+            boolean same = inline.completed == pipelined.completed
+                    && inline.samples == pipelined.samples
+                    && inline.meanAvgWaiting == pipelined.meanAvgWaiting
+                    && inline.rows == pipelined.rows;
+            System.out.printf(Locale.ROOT, "round %d: inline %.2f us/tick, pipelined %.2f us/tick (%+.1f%%), metrics %s%n",
+                    r + 1, inline.microsPerTick, pipelined.microsPerTick,
+                    100.0 * (pipelined.microsPerTick - inline.microsPerTick) / inline.microsPerTick,
+                    same ? "identical" : "DIFFER");
+            ok &= same;
+        }
+        if (!ok) System.exit(1);
+    }
+
+    private static Result run(boolean pipelined, int warmup, int measured) throws Exception {
+        Simulation sim = Scenarios.buildCross(1L);
+        Strategy strategy = new MaxPressure(5);
+        Metrics m = sim.getMetrics();
+        m.setRecordSnapshots(true);
+
+        Path file = Files.createTempFile("pipeline-bench", ".ring");
+        try (TelemetryRing ring = TelemetryRing.create(file, 4096, sim.getIntersections())) {
+            m.setTelemetry(ring);
+            sim.setLiveMetrics(new LiveMetrics());
+            sim.getTickEvents().subscribe(new Drain(), EventPublisher.DEFAULT_CAPACITY, EventPublisher.Overflow.DROP_OLDEST);
+            sim.setPipelined(pipelined);
+
+            for (int i = 0; i < warmup; i++) sim.tick(0.05, strategy);
+            long start = System.nanoTime();
+            for (int i = 0; i < measured; i++) sim.tick(0.05, strategy);
+            sim.flushPipeline(); // the stage's share of the work counts too
+            long elapsed = System.nanoTime() - start;
+
+            sim.setPipelined(false);
+            sim.closeEvents();
+            m.setTelemetry(null);
+            return new Result(elapsed / 1e3 / measured, m.getCompleted(), m.getSampleCount(),
+                    m.getMeanAvgWaiting(), m.getSnapshotCount());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static final class Result {
+        final double microsPerTick;
+        final int completed;
+        final long samples;
+        final double meanAvgWaiting;
+        final int rows;
+
+        Result(double microsPerTick, int completed, long samples, double meanAvgWaiting, int rows) {
+            this.microsPerTick = microsPerTick;
+            this.completed = completed;
+            this.samples = samples;
+            this.meanAvgWaiting = meanAvgWaiting;
+            this.rows = rows;
+        }
+    }
+
+    /** Subscriber that requests everything and discards it. */
+    private static final class Drain implements Flow.Subscriber<SimulationEvents.TickSummary> {
+        public void onSubscribe(Flow.Subscription s) { s.request(Long.MAX_VALUE); }
+        public void onNext(SimulationEvents.TickSummary item) { }
+        public void onError(Throwable t) { }
+        public void onComplete() { }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+package controller;
+
+import model.Intersection;
+import model.Road;
+import model.TrafficLight;
+import model.Vehicle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Scenarios: builds sample worlds without any UI so they can be used by MainApp and headless runs.
+ */
+public class Scenarios {
+
+    /**
+     * Build a sample world (cross) with vehicles.
+     * Creates inbound/outbound pairs and sets turn options for the intersection.
+     */
+    public static Simulation buildCross() {
+        return buildCross(System.nanoTime());
+    }
+
+    /**
+     * Same world with a fixed seed, so the run is reproducible.
+     */
+    public static Simulation buildCross(long seed) {
+        Simulation sim = new Simulation(seed);
+
+        // create intersection
+        Intersection inter = new Intersection("I1");
+        sim.addIntersection(inter);
+
+        // create road pairs (inbound = towards intersection, outbound = away from intersection)
+        // naming: North_in, North_out, etc.
+        Road northIn = new Road("North_in", 300, null, inter);
+        Road northOut = new Road("North_out", 300, inter, null);
+        Road southIn = new Road("South_in", 300, null, inter);
+        Road southOut = new Road("South_out", 300, inter, null);
+        Road eastIn = new Road("East_in", 300, null, inter);
+        Road eastOut = new Road("East_out", 300, inter, null);
+        Road westIn = new Road("West_in", 300, null, inter);
+        Road westOut = new Road("West_out", 300, inter, null);
+
+        // register roads in simulation
+        sim.addRoad(northIn); sim.addRoad(northOut);
+        sim.addRoad(southIn); sim.addRoad(southOut);
+        sim.addRoad(eastIn);  sim.addRoad(eastOut);
+        sim.addRoad(westIn);  sim.addRoad(westOut);
+
+        // lights only for incoming roads
+        TrafficLight ln = new TrafficLight(8, 2, 16);
+        TrafficLight ls = new TrafficLight(8, 2, 16);
+        TrafficLight le = new TrafficLight(8, 2, 16);
+        TrafficLight lw = new TrafficLight(8, 2, 16);
+
+        // initial states
+        ln.setGreen(6.0);
+        lw.setGreen(6.0);
+        ls.setRed(16.0);
+        le.setRed(16.0);
+
+        // add incoming mapping
+        inter.addIncomingRoad(northIn, ln);
+        inter.addIncomingRoad(southIn, ls);
+        inter.addIncomingRoad(eastIn, le);
+        inter.addIncomingRoad(westIn, lw);
+
+        // register outgoing roads in intersection
+        inter.addOutgoingRoad(northOut);
+        inter.addOutgoingRoad(southOut);
+        inter.addOutgoingRoad(eastOut);
+        inter.addOutgoingRoad(westOut);
+
+        // define turning options per incoming road (straight, left, right)
+        // from northIn: straight -> southOut, left -> eastOut, right -> westOut
+        inter.setOutgoingOptions(northIn, Arrays.asList(southOut, eastOut, westOut));
+        // from southIn:
+        inter.setOutgoingOptions(southIn, Arrays.asList(northOut, westOut, eastOut));
+        // from eastIn:
+        inter.setOutgoingOptions(eastIn, Arrays.asList(westOut, northOut, southOut));
+        // from westIn:
+        inter.setOutgoingOptions(westIn, Arrays.asList(eastOut, southOut, northOut));
+
+        // spawn vehicles on inbound roads (start at the beginning of each inbound road)
+        int perRoad = 5;
+        double startOffsetMeters = 5.0;   // distância do início do road (em metros)
+        double spacingMeters = 12.0;      // espaçamento entre veículos em metros
+
+        // spawn vehicles on inbound roads (start at the beginning of each inbound road)
+        for (int i = 0; i < perRoad; i++) {
+            Vehicle vn = new Vehicle("N" + i, northIn, startOffsetMeters + i * spacingMeters, 0, null);
+            sim.addVehicle(vn);
+            Vehicle vs = new Vehicle("S" + i, southIn, startOffsetMeters + i * spacingMeters, 0, null);
+            sim.addVehicle(vs);
+            Vehicle ve = new Vehicle("E" + i, eastIn, startOffsetMeters + i * spacingMeters, 0, null);
+            sim.addVehicle(ve);
+            Vehicle vw = new Vehicle("W" + i, westIn, startOffsetMeters + i * spacingMeters, 0, null);
+            sim.addVehicle(vw);
+        }
+
+        // (Opcional) you can also spawn vehicles on outbound roads if needed
+        // e.g., vehicles leaving the center (use small position near center)
+        // Vehicle vOut = new Vehicle("O1", northOut, 5.0, Arrays.asList(northOut));
+        // sim.addVehicle(vOut);
+        return sim;
+    }
+
+    /**
+     * Cross with scheduled demand instead of the spawn loop: vehPerHour per approach, spread evenly
+     * over the exits, shaped by a 24-hour profile (e.g. Demand.WEEKDAY_PROFILE).
+     */
+    public static Simulation buildCross(long seed, double vehPerHour, double[] profile) {
+        Simulation sim = buildCross(seed);
+        List<Road> origins = new ArrayList<>();
+        List<Road> exits = new ArrayList<>();
+        for (Road r : sim.getRoads()) {
+            if (r.getFrom() == null) origins.add(r);
+            if (r.getTo() == null) exits.add(r);
+        }
+        sim.setDemand(Demand.uniform(origins, exits, vehPerHour, profile));
+        return sim;
+    }
+}
\ No newline at end of file
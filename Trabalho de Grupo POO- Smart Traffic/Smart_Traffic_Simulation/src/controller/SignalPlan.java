@@ -0,0 +1,309 @@
+package controller;
+
+import model.Intersection;
+import model.LightColor;
+import model.Road;
+import model.TrafficLight;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled signal timing plans (pre-timed control with coordination offsets).
+ *
+ * Each intersection has a cycle split into phases; a phase gives green to a set of approaches and
+ * ends with their yellow interval. The active phase is computed directly from simTime:
+ * t = (simTime + offset) mod cycle, so there are no per-tick timers and nothing accumulates error.
+ * Each intersection keeps the clock its plan was last evaluated at; apply(dt, intersection) (callers
+ * without the simulation clock) advances that clock by dt instead.
+ * All plan data lives in primitive arrays indexed by Intersection.getIndex() (per intersection) and by
+ * packed phase number (per phase); lights are only touched when their color actually changes.
+ * Replacing a plan reuses its phase range when the new plan fits in it; ranges left behind are
+ * compacted once they are more than half of the packed phases.
+ * When an intersection's lights change (Intersection.getTopologyVersion) its phases are remapped to
+ * the new light order: a removed road drops out of its phases, and a new light that no phase serves
+ * is held red until a new plan is added.
+ *
+ * Intersections without a plan fall back to their lights' own timers.
+ */
+public class SignalPlan implements Strategy {
+    private static final int MAX_APPROACHES = 64; // approaches are a bitmask per phase
+
+    // per intersection (dense index)
+    private double[] cycle = new double[0];
+    private double[] offset = new double[0];
+    private int[] phaseFirst = new int[0];
+    private int[] phaseCount = new int[0];
+    private int[] lastPhase = new int[0];        // hint: phase found on the previous tick
+    private double[] clock = new double[0];      // time the plan was last evaluated at
+    private TrafficLight[][] approaches = new TrafficLight[0][];
+    private Road[][] approachRoads = new Road[0][];
+    private int[] versions = new int[0];         // topology version the approaches were compiled at
+
+    // per phase (packed)
+    private double[] phaseStart = new double[0]; // seconds into the cycle
+    private double[] phaseEnd = new double[0];
+    private double[] greenEnd = new double[0];   // phaseEnd minus the yellow interval
+    private long[] phaseMask = new long[0];      // approaches that are green/yellow in this phase
+    private int phases = 0;
+    private int deadPhases = 0;                  // packed phases no plan uses any more
+
+    /**
+     * Add (or replace) the plan of an intersection.
+     *
+     * @param in         intersection (must already be added to the Simulation so it has an index)
+     * @param offset     coordination offset in seconds (green-wave), added to simTime
+     * @param splits     duration of each phase in seconds, yellow included (at least one phase, each
+     *                   finite and no shorter than the longest yellow of its roads)
+     * @param phaseRoads incoming roads served by each phase
+     */
+    public void addPlan(Intersection in, double offset, double[] splits, Road[][] phaseRoads) {
+        if (splits.length == 0) throw new IllegalArgumentException("a plan needs at least one phase");
+        if (splits.length != phaseRoads.length) throw new IllegalArgumentException("one road set per phase");
+        if (!Double.isFinite(offset)) throw new IllegalArgumentException("invalid offset " + offset);
+        int idx = in.getIndex();
+        if (idx < 0) throw new IllegalArgumentException("intersection " + in.getId() + " has no index; add it to the Simulation first");
+
+        // approach order = the intersection's light order at compile time
+        int version = in.getTopologyVersion(); // read before the lights, so a concurrent change recompiles
+        Map<Road, TrafficLight> lights = in.getLights();
+        if (lights.size() > MAX_APPROACHES) throw new IllegalArgumentException("too many approaches");
+        List<Road> roads = new ArrayList<>(lights.keySet());
+        TrafficLight[] arr = new TrafficLight[roads.size()];
+        for (int i = 0; i < arr.length; i++) arr[i] = lights.get(roads.get(i));
+
+        // check every phase before storing anything, so a rejected plan leaves the old one in place
+        long[] masks = new long[splits.length];
+        double[] yellows = new double[splits.length];
+        for (int p = 0; p < splits.length; p++) {
+            for (Road r : phaseRoads[p]) {
+                int a = roads.indexOf(r);
+                if (a < 0) throw new IllegalArgumentException(r.getId() + " is not an approach of " + in.getId());
+                masks[p] |= 1L << a;
+                yellows[p] = Math.max(yellows[p], arr[a].getYellowDuration());
+            }
+            if (!(splits[p] > 0) || Double.isInfinite(splits[p])) {
+                throw new IllegalArgumentException("invalid split " + splits[p] + " for phase " + p + " of " + in.getId());
+            }
+            if (splits[p] < yellows[p]) {
+                throw new IllegalArgumentException("phase " + p + " of " + in.getId() + " is shorter than its " + yellows[p] + " s yellow");
+            }
+        }
+
+        ensureIntersections(idx + 1);
+        int first;
+        if (hasPlan(idx) && phaseCount[idx] >= splits.length) {
+            first = phaseFirst[idx]; // the old range has room: overwrite it
+            deadPhases += phaseCount[idx] - splits.length;
+        } else {
+            if (hasPlan(idx)) deadPhases += phaseCount[idx];
+            ensurePhases(phases + splits.length);
+            first = phases;
+            phases += splits.length;
+        }
+        double t = 0.0;
+        for (int p = 0; p < splits.length; p++) {
+            int q = first + p;
+            phaseStart[q] = t;
+            t += splits[p];
+            phaseEnd[q] = t;
+            greenEnd[q] = t - yellows[p];
+            phaseMask[q] = masks[p];
+        }
+
+        cycle[idx] = t;
+        this.offset[idx] = offset;
+        phaseFirst[idx] = first;
+        phaseCount[idx] = splits.length;
+        lastPhase[idx] = first;
+        approaches[idx] = arr;
+        approachRoads[idx] = roads.toArray(new Road[0]);
+        versions[idx] = version;
+        if (deadPhases > phases / 2) compactPhases();
+    }
+
+    /**
+     * Simple plan: every approach gets its own phase of green + its light's yellow, in light order.
+     */
+    public void addRoundRobin(Intersection in, double green, double offset) {
+        List<Road> roads = new ArrayList<>(in.getLights().keySet());
+        double[] splits = new double[roads.size()];
+        Road[][] phaseRoads = new Road[roads.size()][];
+        for (int i = 0; i < splits.length; i++) {
+            splits[i] = green + in.getLights().get(roads.get(i)).getYellowDuration();
+            phaseRoads[i] = new Road[]{roads.get(i)};
+        }
+        addPlan(in, offset, splits, phaseRoads);
+    }
+
+    /**
+     * Green-wave offsets along a corridor: intersection i starts its cycle when a platoon leaving the
+     * first one at progressionSpeed (m/s) arrives, given cumulative distances (m) from the first.
+     */
+    public static double[] greenWaveOffsets(double[] distances, double progressionSpeed) {
+        double[] out = new double[distances.length];
+        for (int i = 0; i < distances.length; i++) out[i] = -distances[i] / progressionSpeed;
+        return out;
+    }
+
+    /**
+     * Advance the intersection's own plan clock by dt and evaluate the plan there.
+     */
+    @Override
+    public void apply(double dt, Intersection intersection) {
+        int idx = intersection.getIndex();
+        apply(hasPlan(idx) ? clock[idx] + dt : 0.0, dt, intersection);
+    }
+
+    @Override
+    public void apply(double simTime, double dt, Intersection intersection) {
+        int idx = intersection.getIndex();
+        if (!hasPlan(idx)) {
+            // no plan: let the lights run on their own timers
+            intersection.updateLights(dt);
+            return;
+        }
+        clock[idx] = simTime;
+        if (versions[idx] != intersection.getTopologyVersion()) recompile(idx, intersection);
+        // an active preemption owns the lights until it expires
+        if (intersection.hasPriority()) return;
+
+        double c = cycle[idx];
+        double t = (simTime + offset[idx]) % c;
+        if (t < 0) t += c;
+
+        // find the active phase, starting from last tick's (almost always the same or the next one)
+        int first = phaseFirst[idx];
+        int n = phaseCount[idx];
+        int p = lastPhase[idx];
+        for (int k = 0; k < n && !(t >= phaseStart[p] && t < phaseEnd[p]); k++) {
+            p = (p + 1 < first + n) ? p + 1 : first;
+        }
+        lastPhase[idx] = p;
+
+        long mask = phaseMask[p];
+        boolean yellow = t >= greenEnd[p];
+        TrafficLight[] arr = approaches[idx];
+        for (int a = 0; a < arr.length; a++) {
+            TrafficLight light = arr[a];
+            LightColor want = (mask & (1L << a)) == 0 ? LightColor.RED : (yellow ? LightColor.YELLOW : LightColor.GREEN);
+            if (light.getColor() == want) continue;
+            // state durations are informative only: the plan, not the state timer, ends the interval
+            switch (want) {
+                case GREEN: light.setGreen(greenEnd[p] - t); break;
+                case YELLOW: light.setYellow(phaseEnd[p] - t); break;
+                default: light.setRed(c - (phaseEnd[p] - phaseStart[p])); break;
+            }
+        }
+    }
+
+    // ---------- checkpoint access (indexes are Intersection.getIndex()) ----------
+
+    int getStateCount() { return cycle.length; }
+    boolean hasPlan(int index) { return index >= 0 && index < cycle.length && approaches[index] != null; }
+    double getOffset(int index) { return offset[index]; }
+    double getClock(int index) { return clock[index]; }
+    int getPhaseCount(int index) { return phaseCount[index]; }
+    int getLastPhase(int index) { return lastPhase[index] - phaseFirst[index]; }
+
+    double getSplit(int index, int phase) {
+        int p = phaseFirst[index] + phase;
+        return phaseEnd[p] - phaseStart[p];
+    }
+
+    Road[] getPhaseRoads(int index, int phase) {
+        long mask = phaseMask[phaseFirst[index] + phase];
+        Road[] roads = approachRoads[index];
+        Road[] out = new Road[Long.bitCount(mask)];
+        int k = 0;
+        for (int a = 0; a < roads.length; a++) if ((mask & (1L << a)) != 0) out[k++] = roads[a];
+        return out;
+    }
+
+    void restoreState(int index, double clockTime, int phase) {
+        clock[index] = clockTime;
+        lastPhase[index] = phaseFirst[index] + phase;
+    }
+
+    /**
+     * Remap the phases of idx to the intersection's current lights (approach positions are bits).
+     */
+    private void recompile(int idx, Intersection in) {
+        int version = in.getTopologyVersion();
+        Map<Road, TrafficLight> lights = in.getLights();
+        if (lights.size() > MAX_APPROACHES) {
+            throw new IllegalStateException(in.getId() + " now has more than " + MAX_APPROACHES + " approaches; replace its plan");
+        }
+        List<Road> roads = new ArrayList<>(lights.keySet());
+        TrafficLight[] arr = new TrafficLight[roads.size()];
+        for (int i = 0; i < arr.length; i++) arr[i] = lights.get(roads.get(i));
+
+        Road[] old = approachRoads[idx];
+        int[] moved = new int[old.length];
+        for (int a = 0; a < old.length; a++) moved[a] = roads.indexOf(old[a]);
+        for (int p = phaseFirst[idx], end = p + phaseCount[idx]; p < end; p++) {
+            long mask = 0;
+            for (int a = 0; a < old.length; a++) {
+                if ((phaseMask[p] & (1L << a)) != 0 && moved[a] >= 0) mask |= 1L << moved[a];
+            }
+            phaseMask[p] = mask;
+        }
+        approaches[idx] = arr;
+        approachRoads[idx] = roads.toArray(new Road[0]);
+        versions[idx] = version;
+    }
+
+    /**
+     * Pack the phase ranges of all plans back to back, dropping the ranges replaced plans left behind.
+     */
+    private void compactPhases() {
+        int live = phases - deadPhases;
+        double[] start = new double[live];
+        double[] end = new double[live];
+        double[] green = new double[live];
+        long[] mask = new long[live];
+        int k = 0;
+        for (int idx = 0; idx < cycle.length; idx++) {
+            if (!hasPlan(idx)) continue;
+            int from = phaseFirst[idx], n = phaseCount[idx];
+            System.arraycopy(phaseStart, from, start, k, n);
+            System.arraycopy(phaseEnd, from, end, k, n);
+            System.arraycopy(greenEnd, from, green, k, n);
+            System.arraycopy(phaseMask, from, mask, k, n);
+            lastPhase[idx] += k - from;
+            phaseFirst[idx] = k;
+            k += n;
+        }
+        phaseStart = start;
+        phaseEnd = end;
+        greenEnd = green;
+        phaseMask = mask;
+        phases = k;
+        deadPhases = 0;
+    }
+
+    private void ensureIntersections(int n) {
+        if (cycle.length >= n) return;
+        int cap = Math.max(n, cycle.length * 2);
+        cycle = Arrays.copyOf(cycle, cap);
+        offset = Arrays.copyOf(offset, cap);
+        phaseFirst = Arrays.copyOf(phaseFirst, cap);
+        phaseCount = Arrays.copyOf(phaseCount, cap);
+        lastPhase = Arrays.copyOf(lastPhase, cap);
+        clock = Arrays.copyOf(clock, cap);
+        approaches = Arrays.copyOf(approaches, cap);
+        approachRoads = Arrays.copyOf(approachRoads, cap);
+        versions = Arrays.copyOf(versions, cap);
+    }
+
+    private void ensurePhases(int n) {
+        if (phaseStart.length >= n) return;
+        int cap = Math.max(n, phaseStart.length * 2);
+        phaseStart = Arrays.copyOf(phaseStart, cap);
+        phaseEnd = Arrays.copyOf(phaseEnd, cap);
+        greenEnd = Arrays.copyOf(greenEnd, cap);
+        phaseMask = Arrays.copyOf(phaseMask, cap);
+    }
+}
\ No newline at end of file
@@ -1,38 +1,144 @@
 package controller;
 
+import model.CompiledNetwork;
 import model.Intersection;
+import model.LaneKernel;
+import model.LightColor;
+import model.OffHeapEngine;
 import model.Road;
+import model.RoadRole;
 import model.TrafficLight;
 import model.Vehicle;
+import controller.SimulationEvents.SignalChange;
+import controller.SimulationEvents.TickSummary;
+import controller.SimulationEvents.VehicleEvent;
+import controller.SimulationEvents.VehicleEventKind;
+import util.EventPublisher;
+import util.FlightEvents;
+import util.LiveMetrics;
 import util.Metrics;
+import util.RandomStream;
+import util.TripLog;
+import util.WaitingTally;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * World / Simulation: holds lists and executes fixed-step tick.
  * Added simple vehicle spawner to create continuous flow (loop).
+ * Randomness comes from one seeded RandomStream per simulation, split per vehicle,
+ * so runs with the same seed are reproducible and parallel runs share nothing.
+ * A tick that spawns no vehicle allocates nothing (see AllocationCheck); the list getters below
+ * return copies, the forEach visitors do not.
+ *
+ * Consumers that should never slow the tick down subscribe to the event publishers instead
+ * (tick summaries, signal changes, vehicle lifecycle): each subscriber has its own bounded buffer
+ * and overflow policy, and events are only built while someone subscribes.
  */
 public class Simulation {
     private final List<Road> roads = new ArrayList<>();
     private final List<Intersection> intersections = new ArrayList<>();
     private final List<Vehicle> vehicles = new ArrayList<>();
     private final Metrics metrics = new Metrics();
+    private final WaitingTally waitingTally = new WaitingTally(); // vehicles' waiting this tick (simulation thread)
     private double simTime = 0.0;
+    private final long seed;
+    private final RandomStream random;
 
     // spawning (loop)
     private double spawnInterval = 3.0; // seconds between spawn attempts
     private double spawnAccumulator = 0.0;
     private int nextVehicleId = 1;
 
-    public synchronized void addRoad(Road r) { roads.add(r); }
-    public synchronized void addIntersection(Intersection i) { intersections.add(i); }
+    // scheduled demand (null = periodic spawn on every inbound road)
+    private Demand demand;
+
+    // compiled topology (rebuilt lazily after changes)
+    private CompiledNetwork network;
+
+    // optional off-heap vehicles (spawns go there instead of Vehicle objects)
+    private OffHeapEngine offHeap;
+
+    // optional lane-at-a-time vehicle update (null = Vehicle.update per vehicle)
+    private LaneKernel laneKernel;
+
+    // optional lock-free publication of the latest figures (e.g. for MetricsServer)
+    private volatile LiveMetrics live; // also read by the pipeline stage
+
+    // optional per-trip completion log
+    private TripLog tripLog;
+
+    // event streams
+    private final EventPublisher<TickSummary> tickEvents = new EventPublisher<>();
+    private final EventPublisher<SignalChange> signalEvents = new EventPublisher<>();
+    private final EventPublisher<VehicleEvent> vehicleEvents = new EventPublisher<>();
+    private String[] approachIds = new String[0];  // shared by TickSummaries until the approaches change
+    private LightColor[] lastColors;               // per approach, while signalEvents has subscribers
+
+    // optional second stage running the end-of-tick bookkeeping on another thread (null = inline)
+    private TickPipeline pipeline;
+    public static final int PIPELINE_DEPTH = 64;
+
+    public Simulation() {
+        this(System.nanoTime());
+    }
+
+    public Simulation(long seed) {
+        this(seed, new RandomStream(seed));
+    }
+
+    // used by Checkpoint to bring back the random source mid-stream
+    Simulation(long seed, RandomStream random) {
+        this.seed = seed;
+        this.random = random;
+    }
+
+    public synchronized void addRoad(Road r) {
+        r.setIndex(roads.size());
+        roads.add(r);
+        network = null;
+    }
+    public synchronized void addIntersection(Intersection i) {
+        i.setIndex(intersections.size());
+        intersections.add(i);
+        network = null;
+    }
+
+    /**
+     * Array form of the current topology, recompiled when roads, lights or turns changed.
+     */
+    public synchronized CompiledNetwork getNetwork() {
+        if (network == null || !network.isValid()) network = CompiledNetwork.compile(roads, intersections);
+        return network;
+    }
     public synchronized void addVehicle(Vehicle v) {
+        if (v.getRandom() == null) v.setRandom(random.split());
+        v.setMetrics(metrics);
+        v.setWaitingTally(waitingTally);
+        v.setSpawnTime(simTime);
+        metrics.addActiveWaiting(v.getWaitingTime());
         vehicles.add(v);
         if (v.getRoad() != null) v.getRoad().addVehicle(v);
+
+        if (FlightEvents.VEHICLE_SPAWN.isEnabled()) {
+            FlightEvents.VehicleSpawnEvent ev = new FlightEvents.VehicleSpawnEvent();
+            ev.vehicle = v.getId();
+            ev.road = v.getRoad() == null ? null : v.getRoad().getId();
+            ev.simTime = simTime;
+            ev.commit();
+        }
+        if (vehicleEvents.hasSubscribers()) {
+            vehicleEvents.submit(new VehicleEvent(VehicleEventKind.SPAWNED, simTime, v.getId(),
+                    v.getRoad() == null ? null : v.getRoad().getId(), v.getWaitingTime(), v.getTripTime()));
+        }
     }
 
     public synchronized List<Vehicle> getVehicles() { return new ArrayList<>(vehicles); }
+    public synchronized int getVehicleCount() {
+        return vehicles.size() + (offHeap == null ? 0 : offHeap.getActiveCount());
+    }
     public synchronized List<TrafficLight> getLights() {
         List<TrafficLight> out = new ArrayList<>();
         for (Intersection i : intersections) out.addAll(i.getLights().values());
@@ -41,59 +147,240 @@ public class Simulation {
 
     public synchronized List<Road> getRoads() { return new ArrayList<>(roads); }
     public synchronized List<Intersection> getIntersections() { return new ArrayList<>(intersections); }
+    public synchronized int getRoadCount() { return roads.size(); }
+
+    // ---------- allocation-free iteration (visitors must not add or remove elements) ----------
+
+    public synchronized void forEachVehicle(Consumer<? super Vehicle> visitor) {
+        for (int i = 0; i < vehicles.size(); i++) visitor.accept(vehicles.get(i));
+    }
+
+    public synchronized void forEachRoad(Consumer<? super Road> visitor) {
+        for (int i = 0; i < roads.size(); i++) visitor.accept(roads.get(i));
+    }
+
+    public synchronized void forEachIntersection(Consumer<? super Intersection> visitor) {
+        for (int i = 0; i < intersections.size(); i++) visitor.accept(intersections.get(i));
+    }
+
+    public synchronized void forEachLight(Consumer<? super TrafficLight> visitor) {
+        for (int i = 0; i < intersections.size(); i++) {
+            Intersection in = intersections.get(i);
+            for (int a = 0, n = in.getApproachCount(); a < n; a++) visitor.accept(in.getApproachLight(a));
+        }
+    }
 
     /**
      * Fixed-step tick: update intersections (timers), then strategies/lights, THEN vehicles.
      * dt in seconds.
      */
     public synchronized void tick(double dt, Strategy defaultStrategy) {
+        // JFR tick event: only created and timed while a recording has it enabled
+        boolean timed = FlightEvents.TICK.isEnabled();
+        FlightEvents.TickEvent ev = timed ? new FlightEvents.TickEvent() : null;
+        if (timed) ev.begin();
+        long t0 = timed ? System.nanoTime() : 0L;
+        long t1;
+        long tickStart = System.nanoTime();
+
         simTime += dt;
+        // recompile if the topology changed since the last tick; select this hour's turn tables
+        getNetwork().setHour((int) ((simTime / 3600.0) % 24.0));
 
         // 1) tick intersections (for priority timers)
-        for (Intersection in : intersections) {
-            in.tick(dt);
+        for (int i = 0; i < intersections.size(); i++) {
+            intersections.get(i).tick(dt);
         }
+        if (timed) { t1 = System.nanoTime(); ev.intersectionsNanos = t1 - t0; t0 = t1; }
 
         // 2) update strategies/lights
-        for (Intersection in : intersections) {
-            if (defaultStrategy != null) defaultStrategy.apply(dt, in);
-            else {
-                for (TrafficLight l : in.getLights().values()) l.update(dt);
-            }
+        if (defaultStrategy != null) {
+            defaultStrategy.applyAll(simTime, dt, intersections);
+        } else {
+            for (int i = 0; i < intersections.size(); i++) intersections.get(i).updateLights(dt);
         }
+        if (signalEvents.hasSubscribers()) publishSignalChanges();
+        else lastColors = null;
+        if (timed) { t1 = System.nanoTime(); ev.strategyNanos = t1 - t0; t0 = t1; }
 
-        // 3) update vehicles
-        for (Vehicle v : new ArrayList<>(vehicles)) {
+        // 3) update vehicles, compacting out those that left the world (in place, order kept)
+        int kept = 0;
+        for (int i = 0, n = vehicles.size(); i < n; i++) {
+            Vehicle v = vehicles.get(i);
             if (v.getRoad() == null) {
                 // vehicle left the world
-                vehicles.remove(v);
                 metrics.countVehicleCompleted();
+                metrics.recordTrip(v.getWaitingTime(), v.getTripTime());
+                if (tripLog != null) tripLog.record(v, simTime);
+                recordCompleted(v);
                 continue;
             }
-            v.update(dt);
+            if (laneKernel == null) v.update(dt);
+            vehicles.set(kept++, v);
+        }
+        for (int i = vehicles.size() - 1; i >= kept; i--) vehicles.remove(i);
+        if (laneKernel != null) laneKernel.stepRoads(roads, dt);
+        if (offHeap != null) {
+            long before = offHeap.getCompleted();
+            offHeap.step(getNetwork(), dt);
+            if (offHeap.getCompleted() > before) metrics.addCompleted(offHeap.getCompleted() - before);
+            waitingTally.add(offHeap.takeWaitingDelta());
         }
+        waitingTally.foldInto(metrics); // one synchronized call for all of this tick's waiting
+        if (timed) { t1 = System.nanoTime(); ev.vehiclesNanos = t1 - t0; t0 = t1; }
 
-        // 4) spawn loop: periodically try to spawn vehicles at inbound roads
-        spawnAccumulator += dt;
-        if (spawnAccumulator >= spawnInterval) {
-            spawnAccumulator = 0.0;
-            trySpawnVehicles();
+        // 4) spawn: scheduled demand, or periodically try to spawn vehicles at inbound roads
+        if (demand != null) {
+            demand.release(this, simTime);
+        } else {
+            spawnAccumulator += dt;
+            if (spawnAccumulator >= spawnInterval) {
+                spawnAccumulator = 0.0;
+                trySpawnVehicles();
+            }
         }
+        if (timed) { t1 = System.nanoTime(); ev.spawnNanos = t1 - t0; t0 = t1; }
 
-        // update metrics with intersections (so we can record queue lengths)
-        metrics.sample(simTime, vehicles, intersections);
+        // 5) bookkeeping: inline, or handed with a summary slot to the pipeline stage
+        if (pipeline != null) {
+            fill(pipeline.next(), dt, System.nanoTime() - tickStart);
+            pipeline.submit();
+        } else {
+            // update metrics with intersections (so we can record queue lengths)
+            metrics.sample(simTime, getVehicleCount(), intersections);
+            if (live != null) live.publish(simTime, metrics, getVehicleCount(), intersections, System.nanoTime() - tickStart);
+            if (tickEvents.hasSubscribers()) tickEvents.submit(summarize(dt, System.nanoTime() - tickStart));
+        }
+
+        if (timed) {
+            ev.metricsNanos = System.nanoTime() - t0;
+            ev.end();
+            if (ev.shouldCommit()) {
+                ev.simTime = simTime;
+                ev.dt = dt;
+                ev.activeVehicles = getVehicleCount();
+                ev.commit();
+            }
+        }
     }
 
-    private void trySpawnVehicles() {
-        // spawn vehicles on roads whose id ends with "_in" if there is space near the start
-        for (Road r : new ArrayList<>(roads)) {
-            if (!r.getId().endsWith("_in")) continue;
-            // check lane 0 (inbound) for space near start (first 10 meters)
-            boolean space = true;
-            for (Vehicle v : r.getVehiclesInLane(0)) {
-                if (v.getPosition() < 12.0) { space = false; break; }
+    private void recordCompleted(Vehicle v) {
+        if (FlightEvents.VEHICLE_COMPLETE.isEnabled()) {
+            FlightEvents.VehicleCompleteEvent ev = new FlightEvents.VehicleCompleteEvent();
+            ev.vehicle = v.getId();
+            ev.waitingTime = v.getWaitingTime();
+            ev.simTime = simTime;
+            ev.commit();
+        }
+        if (vehicleEvents.hasSubscribers()) {
+            vehicleEvents.submit(new VehicleEvent(VehicleEventKind.COMPLETED, simTime, v.getId(),
+                    v.getLastRoad() == null ? null : v.getLastRoad().getId(), v.getWaitingTime(), v.getTripTime()));
+        }
+    }
+
+    private int approachCount() {
+        int n = 0;
+        for (int i = 0; i < intersections.size(); i++) n += intersections.get(i).getApproachCount();
+        return n;
+    }
+
+    /**
+     * Compare every approach light with its color after the previous tick (the first tick after
+     * someone subscribed, or after the approaches changed, only takes the reference colors).
+     */
+    private void publishSignalChanges() {
+        int n = approachCount();
+        boolean fresh = lastColors == null || lastColors.length != n;
+        if (fresh) lastColors = new LightColor[n];
+        int k = 0;
+        for (int i = 0; i < intersections.size(); i++) {
+            Intersection in = intersections.get(i);
+            for (int a = 0, m = in.getApproachCount(); a < m; a++, k++) {
+                LightColor now = in.getApproachLight(a).getColor();
+                LightColor before = lastColors[k];
+                lastColors[k] = now;
+                if (!fresh && now != before) {
+                    signalEvents.submit(new SignalChange(simTime, in.getId(), in.getApproach(a).getId(), before, now));
+                }
+            }
+        }
+    }
+
+    /**
+     * Immutable copy of the end-of-tick state for tick event subscribers.
+     */
+    private TickSummary summarize(double dt, long stepNanos) {
+        int[] queues = new int[approachCount()];
+        String[] ids = copyQueues(queues);
+        int active = getVehicleCount();
+        double avgWaiting = active > 0 ? metrics.getActiveWaiting() / active : 0.0; // as Metrics.sample
+        return new TickSummary(simTime, dt, metrics.getCompleted(), active, avgWaiting, ids, queues, stepNanos);
+    }
+
+    /**
+     * Same figures as summarize, written into a reused pipeline slot (no allocation unless the
+     * approaches changed).
+     */
+    private void fill(TickPipeline.Slot s, double dt, long stepNanos) {
+        int n = approachCount();
+        if (s.queues.length != n) s.queues = new int[n];
+        s.approachIds = copyQueues(s.queues);
+        s.simTime = simTime;
+        s.dt = dt;
+        s.completed = metrics.getCompleted();
+        s.active = getVehicleCount();
+        s.avgWaiting = s.active > 0 ? metrics.getActiveWaiting() / s.active : 0.0;
+        s.stepNanos = stepNanos;
+    }
+
+    /**
+     * Queue length of every approach into queues, in approach order, read from the roads' counters
+     * (O(approaches)). Returns the approach ids, an array shared until the approaches change.
+     */
+    private String[] copyQueues(int[] queues) {
+        int n = queues.length;
+        boolean sameIds = approachIds.length == n;
+        String[] ids = sameIds ? approachIds : new String[n];
+        int k = 0;
+        for (int i = 0; i < intersections.size(); i++) {
+            Intersection in = intersections.get(i);
+            for (int a = 0, m = in.getApproachCount(); a < m; a++, k++) {
+                Road r = in.getApproach(a);
+                if (sameIds && !ids[k].equals(r.getId())) {
+                    ids = ids.clone(); // never modify an array earlier summaries hold
+                    sameIds = false;
+                }
+                ids[k] = r.getId();
+                queues[k] = in.countWaitingVehicles(r);
             }
-            if (space) {
+        }
+        approachIds = ids;
+        return ids;
+    }
+
+    /**
+     * Pipeline stage: everything here reads only the slot, never the world. Metrics, LiveMetrics
+     * and the telemetry ring copy the queues; tick events get their own copy.
+     */
+    private void finishTick(TickPipeline.Slot s) {
+        metrics.recordSample(s.simTime, s.completed, s.active, s.avgWaiting, s.approachIds, s.queues);
+        LiveMetrics l = live;
+        if (l != null) l.publish(s.simTime, s.completed, s.active, s.avgWaiting, s.approachIds, s.queues, s.stepNanos);
+        if (tickEvents.hasSubscribers()) {
+            tickEvents.submit(new TickSummary(s.simTime, s.dt, s.completed, s.active, s.avgWaiting,
+                    s.approachIds, s.queues.clone(), s.stepNanos));
+        }
+    }
+
+    private void trySpawnVehicles() {
+        // spawn vehicles on inbound roads if there is space near the start
+        for (int i = 0; i < roads.size(); i++) {
+            Road r = roads.get(i);
+            if (r.getRole() != RoadRole.INBOUND) continue;
+            // check lane 0 (inbound) for space near start (first 12 meters)
+            if (offHeap != null) {
+                spawn(r, 5.0, 12.0, null); // checks both kinds of vehicle at the entry
+            } else if (r.isEntryClear(0, 12.0)) {
                 String vid = "V" + (nextVehicleId++);
                 // spawn at 5 meters in lane 0 with no preset route (dynamic turns)
                 Vehicle nv = new Vehicle(vid, r, 5.0, 0, null);
@@ -102,12 +389,147 @@ public class Simulation {
         }
     }
 
+    /**
+     * Spawn a vehicle at position on lane 0 of road if its first clearance meters are free.
+     * Returns the vehicle, or null if the entry is blocked.
+     */
+    public synchronized Vehicle spawnVehicle(Road road, double position, double clearance, List<Road> route) {
+        if (!road.isEntryClear(0, clearance)) return null;
+        Vehicle v = new Vehicle("V" + (nextVehicleId++), road, position, 0, route);
+        addVehicle(v);
+        return v;
+    }
+
+    /**
+     * Spawn on the active vehicle storage (off-heap store if set, else a Vehicle object).
+     * Returns false if the entry is blocked by either kind of vehicle (or the store is full).
+     */
+    public synchronized boolean spawn(Road road, double position, double clearance, List<Road> route) {
+        if (offHeap == null) return spawnVehicle(road, position, clearance, route) != null;
+        if (!road.isEntryClear(0, clearance)) return false; // Vehicle objects still on the road
+        return offHeap.spawn(nextVehicleId++, road, position, clearance, route);
+    }
+
+    /**
+     * Keep new vehicles off-heap (FFM) instead of as Vehicle objects: for very large headless runs.
+     * Existing Vehicle objects keep running, but the two kinds only interact at road entries: a spawn
+     * waits until neither kind occupies the first clearance meters. Past the entry an off-heap vehicle
+     * does not follow or queue behind a Vehicle object (nor the reverse), so they may overlap until the
+     * Vehicle objects have left. Off-heap vehicles count in the active figures and the Metrics waiting
+     * average, and their completions in the completed count, but they are not drawn, not
+     * checkpointed, and their trips reach neither the trip histograms nor the trip log (the store
+     * keeps no spawn time or id string).
+     */
+    public synchronized void setOffHeapEngine(OffHeapEngine offHeap) { this.offHeap = offHeap; }
+    public synchronized OffHeapEngine getOffHeapEngine() { return offHeap; }
+
+    /**
+     * Replace the periodic spawn loop with scheduled demand (null restores the spawn loop).
+     * Generated arrivals draw from a stream split off this simulation's seed and start at the current time.
+     */
+    public synchronized void setDemand(Demand demand) {
+        this.demand = demand;
+        if (demand != null) demand.start(random.split(), simTime);
+    }
+
+    public synchronized Demand getDemand() { return demand; }
+
+    // set a restored demand as-is (its queue and random stream come from the checkpoint)
+    synchronized void restoreDemand(Demand demand) { this.demand = demand; }
+
     public Metrics getMetrics() { return metrics; }
+    public WaitingTally getWaitingTally() { return waitingTally; }
+
+    /**
+     * Publish completed/active/waiting/queues and the tick latency after every tick (null stops it).
+     */
+    public synchronized void setLiveMetrics(LiveMetrics live) { this.live = live; }
+    public synchronized LiveMetrics getLiveMetrics() { return live; }
+
+    /**
+     * Append a record to log for every Vehicle that leaves the world (null stops it; off-heap vehicles
+     * are not logged). The caller closes the log.
+     */
+    public synchronized void setTripLog(TripLog log) { this.tripLog = log; }
+    public synchronized TripLog getTripLog() { return tripLog; }
+
+    /**
+     * Run the end-of-tick bookkeeping (metrics row, telemetry ring, live metrics, tick events) of
+     * tick t on a second thread while tick t+1 is stepped. The simulation thread only copies the
+     * approach queue counters into a reused slot; the stage is at most PIPELINE_DEPTH ticks behind,
+     * so Metrics may lag that much until flushPipeline (Checkpoint flushes before capturing).
+     * Worth it with telemetry, snapshots or tick event subscribers on a machine with a spare core;
+     * see PipelineBench. false flushes and stops the stage.
+     */
+    public synchronized void setPipelined(boolean pipelined) {
+        if (pipelined == (pipeline != null)) return;
+        if (pipelined) {
+            pipeline = new TickPipeline(PIPELINE_DEPTH, this::finishTick);
+        } else {
+            TickPipeline p = pipeline;
+            pipeline = null;
+            p.stop();
+        }
+    }
+
+    public synchronized boolean isPipelined() { return pipeline != null; }
+
+    /**
+     * Wait until the pipeline stage has caught up with the last tick (no-op when not pipelined).
+     */
+    public synchronized void flushPipeline() {
+        if (pipeline != null) pipeline.flush();
+    }
+
+    // ---------- event streams (subscribe from any thread; see EventPublisher.subscribe for policies) ----------
+
+    /** one TickSummary at the end of every tick */
+    public EventPublisher<TickSummary> getTickEvents() { return tickEvents; }
+
+    /** one SignalChange per approach light that changed color during a tick */
+    public EventPublisher<SignalChange> getSignalEvents() { return signalEvents; }
+
+    /** SPAWNED when a Vehicle is added, COMPLETED when it leaves the world */
+    public EventPublisher<VehicleEvent> getVehicleEvents() { return vehicleEvents; }
+
+    /**
+     * Complete all event streams (subscribers get what is buffered, then onComplete).
+     */
+    public void closeEvents() {
+        tickEvents.close();
+        signalEvents.close();
+        vehicleEvents.close();
+    }
     public double getSimTime() { return simTime; }
+    public long getSeed() { return seed; }
+
+    /**
+     * Update vehicles lane by lane with a LaneKernel (e.g. LaneKernel.create(true)); null restores
+     * the per-vehicle Vehicle.update path. Kernel lanes use synchronous car-following (every
+     * vehicle reacts to its leader's state from the start of the tick).
+     */
+    public synchronized void setLaneKernel(LaneKernel laneKernel) { this.laneKernel = laneKernel; }
+    public synchronized LaneKernel getLaneKernel() { return laneKernel; }
+
+    // ---------- checkpoint support (package-private) ----------
+
+    RandomStream getRandom() { return random; }
+    double getSpawnInterval() { return spawnInterval; }
+    double getSpawnAccumulator() { return spawnAccumulator; }
+    int getNextVehicleId() { return nextVehicleId; }
+    List<Vehicle> vehicleList() { return vehicles; }
+
+    void restoreClock(double simTime, double spawnInterval, double spawnAccumulator, int nextVehicleId) {
+        this.simTime = simTime;
+        this.spawnInterval = spawnInterval;
+        this.spawnAccumulator = spawnAccumulator;
+        this.nextVehicleId = nextVehicleId;
+    }
 
     public synchronized void clear() {
         roads.clear();
         intersections.clear();
         vehicles.clear();
+        metrics.resetActiveWaiting();
     }
 }
\ No newline at end of file
@@ -0,0 +1,106 @@
+package controller;
+
+import model.LightColor;
+
+/**
+ * Immutable items published by Simulation on its EventPublishers (getTickEvents, getSignalEvents,
+ * getVehicleEvents). They are only built while the matching publisher has subscribers.
+ */
+public final class SimulationEvents {
+
+    private SimulationEvents() { }
+
+    /**
+     * State at the end of one tick.
+     */
+    public static final class TickSummary {
+        private final double simTime;
+        private final double dt;
+        private final int completed;
+        private final int active;
+        private final double avgWaiting;
+        private final String[] approachIds; // shared between summaries, never modified
+        private final int[] queues;
+        private final long stepNanos;
+
+        TickSummary(double simTime, double dt, int completed, int active, double avgWaiting,
+                    String[] approachIds, int[] queues, long stepNanos) {
+            this.simTime = simTime;
+            this.dt = dt;
+            this.completed = completed;
+            this.active = active;
+            this.avgWaiting = avgWaiting;
+            this.approachIds = approachIds;
+            this.queues = queues;
+            this.stepNanos = stepNanos;
+        }
+
+        public double getSimTime() { return simTime; }
+        public double getDt() { return dt; }
+        public int getCompleted() { return completed; }
+        public int getActive() { return active; }
+        public double getAvgWaiting() { return avgWaiting; }
+        public int getApproachCount() { return queues.length; }
+        public String getApproachId(int i) { return approachIds[i]; }
+        public int getQueue(int i) { return queues[i]; }
+
+        /** wall-clock nanoseconds the tick took up to the point the summary was made */
+        public long getStepNanos() { return stepNanos; }
+    }
+
+    /**
+     * A light changed color during a tick.
+     */
+    public static final class SignalChange {
+        private final double simTime;
+        private final String intersection;
+        private final String approach;
+        private final LightColor from;
+        private final LightColor to;
+
+        SignalChange(double simTime, String intersection, String approach, LightColor from, LightColor to) {
+            this.simTime = simTime;
+            this.intersection = intersection;
+            this.approach = approach;
+            this.from = from;
+            this.to = to;
+        }
+
+        public double getSimTime() { return simTime; }
+        public String getIntersection() { return intersection; }
+        public String getApproach() { return approach; }
+        public LightColor getFrom() { return from; }
+        public LightColor getTo() { return to; }
+    }
+
+    public enum VehicleEventKind { SPAWNED, COMPLETED }
+
+    /**
+     * A vehicle entered (road = start road) or left (road = exit road) the world.
+     */
+    public static final class VehicleEvent {
+        private final VehicleEventKind kind;
+        private final double simTime;
+        private final String vehicle;
+        private final String road;
+        private final double waitingTime;
+        private final double travelTime;
+
+        VehicleEvent(VehicleEventKind kind, double simTime, String vehicle, String road,
+                     double waitingTime, double travelTime) {
+            this.kind = kind;
+            this.simTime = simTime;
+            this.vehicle = vehicle;
+            this.road = road;
+            this.waitingTime = waitingTime;
+            this.travelTime = travelTime;
+        }
+
+        public VehicleEventKind getKind() { return kind; }
+        public double getSimTime() { return simTime; }
+        public String getVehicle() { return vehicle; }
+        public String getRoad() { return road; }
+        public double getWaitingTime() { return waitingTime; }
+        public double getTravelTime() { return travelTime; }
+    }
+}
\ No newline at end of file
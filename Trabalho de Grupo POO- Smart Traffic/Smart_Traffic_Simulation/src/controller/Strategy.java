@@ -2,9 +2,28 @@ package controller;
 
 import model.Intersection;
 
+import java.util.List;
+
 /**
  * Strategy interface for controlling lights (fixed/adaptive).
  */
 public interface Strategy {
     void apply(double dt, Intersection intersection);
+
+    /**
+     * Called by Simulation.tick with the simulation clock (after it was advanced by dt).
+     * Strategies that derive signal state directly from time (e.g. SignalPlan) override this.
+     */
+    default void apply(double simTime, double dt, Intersection intersection) {
+        apply(dt, intersection);
+    }
+
+    /**
+     * Batch entry point used by Simulation.tick: one call per tick for all intersections.
+     * The default applies them one by one; strategies with array state indexed by
+     * Intersection.getIndex() can override it to size their arrays once and run in parallel.
+     */
+    default void applyAll(double simTime, double dt, List<Intersection> intersections) {
+        for (int i = 0; i < intersections.size(); i++) apply(simTime, dt, intersections.get(i));
+    }
 }
\ No newline at end of file
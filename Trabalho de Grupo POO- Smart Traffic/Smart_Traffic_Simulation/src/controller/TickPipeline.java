@@ -0,0 +1,117 @@
+package controller;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Second stage of a pipelined Simulation: a worker thread that runs the per-tick bookkeeping
+ * (metrics row, telemetry, live metrics, tick events) on the summary of tick t while the
+ * simulation thread steps tick t+1. The stage only reads its slot, never the world.
+ *
+ * Single producer, single consumer over a ring of preallocated slots, so a tick hands its summary
+ * over without allocating or locking. When the stage is depth ticks behind, submit waits, so no
+ * sample is lost. The stage must not take the Simulation lock (flush is called while holding it).
+ */
+final class TickPipeline {
+
+    /**
+     * One tick's summary. Filled by the simulation thread, then read-only until the stage is done with it.
+     */
+    static final class Slot {
+        double simTime;
+        double dt;
+        int completed;
+        int active;
+        double avgWaiting;
+        String[] approachIds = new String[0]; // shared between slots and Metrics rows, never modified
+        int[] queues = new int[0];            // reused, resized when the approach count changes
+        long stepNanos;
+    }
+
+    private final Slot[] slots;
+    private final Consumer<Slot> stage;
+    private final Thread worker;
+    private volatile long submitted;   // written by the simulation thread only
+    private volatile long processed;   // written by the worker only
+    private volatile boolean sleeping; // worker is (about to be) parked waiting for a slot
+    private volatile boolean stopped;
+    private volatile Throwable failure;
+
+    TickPipeline(int depth, Consumer<Slot> stage) {
+        this.slots = new Slot[depth];
+        for (int i = 0; i < depth; i++) slots[i] = new Slot();
+        this.stage = stage;
+        this.worker = new Thread(this::run, "simulation-pipeline");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Slot for the next tick, waiting while the stage still holds every slot.
+     */
+    Slot next() {
+        while (submitted - processed >= slots.length) {
+            checkFailure();
+            LockSupport.parkNanos(20_000L);
+        }
+        return slots[(int) (submitted % slots.length)];
+    }
+
+    /**
+     * Hand the slot returned by next() to the stage.
+     */
+    void submit() {
+        submitted++;
+        if (sleeping) LockSupport.unpark(worker);
+    }
+
+    /**
+     * Wait until every submitted tick has been through the stage.
+     */
+    void flush() {
+        while (processed < submitted && failure == null) LockSupport.parkNanos(20_000L);
+        checkFailure();
+    }
+
+    /**
+     * Flush, then stop the worker thread.
+     */
+    void stop() {
+        try {
+            flush();
+        } finally {
+            stopped = true;
+            LockSupport.unpark(worker);
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) throw new IllegalStateException("Pipelined tick stage failed", failure);
+    }
+
+    private void run() {
+        while (true) {
+            long n = processed;
+            if (n == submitted) {
+                // announce the park before the last check, so a submit in between unparks us
+                sleeping = true;
+                if (n == submitted && !stopped) LockSupport.park(this);
+                sleeping = false;
+                if (stopped && n == submitted) return;
+                continue;
+            }
+            try {
+                stage.accept(slots[(int) (n % slots.length)]);
+            } catch (Throwable t) {
+                failure = t;
+                return;
+            }
+            processed = n + 1;
+        }
+    }
+}
\ No newline at end of file
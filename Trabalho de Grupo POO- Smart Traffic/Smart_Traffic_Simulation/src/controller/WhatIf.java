@@ -0,0 +1,136 @@
+package controller;
+
+import util.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * What-if branches: fork the running Simulation into N independent copies, each driven by a
+ * different Strategy, and run them ahead for a fixed horizon on worker threads.
+ *
+ * The live run is only blocked while its state is encoded once (Checkpoint.capture); each branch
+ * decodes its own copy on its worker thread, so the main loop keeps ticking meanwhile.
+ */
+public class WhatIf {
+
+    /**
+     * A branch to evaluate. A null strategy supplier means "keep the current strategy" (its state is copied).
+     */
+    public static class Branch {
+        private final String label;
+        private final Supplier<Strategy> strategy;
+
+        public Branch(String label, Supplier<Strategy> strategy) {
+            this.label = label;
+            this.strategy = strategy;
+        }
+
+        public String getLabel() { return label; }
+    }
+
+    /**
+     * Metrics deltas of one branch over the horizon.
+     */
+    public static class BranchResult {
+        private final String label;
+        private final int completed;
+        private final double meanWaiting;
+        private final int active;
+        private final double endTime;
+
+        public BranchResult(String label, int completed, double meanWaiting, int active, double endTime) {
+            this.label = label;
+            this.completed = completed;
+            this.meanWaiting = meanWaiting;
+            this.active = active;
+            this.endTime = endTime;
+        }
+
+        public String getLabel() { return label; }
+        /** vehicles completed during the horizon */
+        public int getCompleted() { return completed; }
+        /** mean of the sampled average waiting time during the horizon */
+        public double getMeanWaiting() { return meanWaiting; }
+        /** active vehicles at the end of the horizon */
+        public int getActive() { return active; }
+        public double getEndTime() { return endTime; }
+    }
+
+    private final ExecutorService workers;
+
+    public WhatIf(int threads) {
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "what-if");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Fork live into the given branches and run each for horizon seconds with step dt.
+     * The future completes with one result per branch, in the same order, or exceptionally if a
+     * branch fails or the live simulation cannot be captured (the caller is never thrown at).
+     */
+    public CompletableFuture<List<BranchResult>> fork(Simulation live, Strategy liveStrategy,
+                                                      List<Branch> branches, double horizon, double dt) {
+        // the baseline copy needs the live strategy's state; other branches start from fresh strategies
+        boolean needsCurrent = false;
+        for (Branch b : branches) if (b.strategy == null) needsCurrent = true;
+        byte[] state;
+        try {
+            state = Checkpoint.capture(live, needsCurrent ? liveStrategy : null);
+        } catch (IllegalStateException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        List<CompletableFuture<BranchResult>> futures = new ArrayList<>(branches.size());
+        for (Branch b : branches) {
+            futures.add(CompletableFuture.supplyAsync(() -> runBranch(state, b, horizon, dt), workers));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<BranchResult> out = new ArrayList<>(futures.size());
+            for (CompletableFuture<BranchResult> f : futures) out.add(f.join());
+            return out;
+        });
+    }
+
+    private static BranchResult runBranch(byte[] state, Branch b, double horizon, double dt) {
+        Checkpoint copy = Checkpoint.restore(state);
+        Simulation sim = copy.getSimulation();
+        Strategy strategy = b.strategy == null ? copy.getStrategy() : b.strategy.get();
+
+        Metrics m = sim.getMetrics();
+        m.setRecordSnapshots(false);
+        int completed0 = m.getCompleted();
+        long samples0 = m.getSampleCount();
+        double waitSum0 = m.getAvgWaitingSum();
+
+        long steps = Math.round(horizon / dt);
+        for (long i = 0; i < steps; i++) sim.tick(dt, strategy);
+
+        long samples = m.getSampleCount() - samples0;
+        double meanWaiting = samples == 0 ? 0.0 : (m.getAvgWaitingSum() - waitSum0) / samples;
+        return new BranchResult(b.label, m.getCompleted() - completed0, meanWaiting,
+                sim.getVehicles().size(), sim.getSimTime());
+    }
+
+    public static String formatTable(List<BranchResult> results) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-24s %10s %12s %8s%n", "branch", "completed", "avgWait(s)", "active"));
+        for (BranchResult r : results) {
+            sb.append(String.format(Locale.ROOT, "%-24s %10d %12.2f %8d%n",
+                    r.getLabel(), r.getCompleted(), r.getMeanWaiting(), r.getActive()));
+        }
+        return sb.toString();
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
\ No newline at end of file
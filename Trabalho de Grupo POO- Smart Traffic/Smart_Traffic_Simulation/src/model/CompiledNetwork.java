@@ -0,0 +1,154 @@
+package model;
+
+import util.AliasTable;
+
+import java.util.List;
+
+/**
+ * Read-only, array-based form of the Road/Intersection graph used by the vehicle hot path.
+ *
+ * Roads and intersections are identified by their dense indexes (Road.getIndex(), Intersection.getIndex()).
+ * Turn options are packed in compressed sparse row form: the options of road r are
+ * turnTarget[turnStart[r] .. turnStart[r + 1]). Each road also gets its role and the light that
+ * controls its downstream end, so a vehicle never goes through a string, a HashMap or a lock.
+ *
+ * Turning ratios are compiled into alias tables (one per road, or one per hour of the day), so a
+ * weighted turn is drawn in O(1); Simulation selects the hour's tables as the clock advances.
+ *
+ * Intersections invalidate the compiled form when their lights or turns change; Simulation
+ * recompiles before the next tick. Changing only turning ratios rebuilds that road's tables.
+ */
+public final class CompiledNetwork {
+    private final Road[] roads;
+    private final int[] roadFrom;           // intersection index, -1 if none
+    private final int[] roadTo;             // intersection index, -1 if none
+    private final RoadRole[] roadRole;
+    private final TrafficLight[] signal;    // light at the road's downstream end, or null
+    private final int[] turnStart;          // CSR row pointers, roads.length + 1 entries
+    private final Road[] turnTarget;        // CSR column values (roads)
+    private final int[] turnTargetIndex;    // same, as road indexes
+    private final AliasTable[][] turnTables; // per road: null (uniform), 1 table or 24 hourly tables
+    private final AliasTable[] activeTurns;  // table of the current hour per road (null = uniform)
+    private int hour = 0;
+    private volatile boolean valid = true;
+
+    private CompiledNetwork(int roadCount, int turnCount) {
+        roads = new Road[roadCount];
+        roadFrom = new int[roadCount];
+        roadTo = new int[roadCount];
+        roadRole = new RoadRole[roadCount];
+        signal = new TrafficLight[roadCount];
+        turnStart = new int[roadCount + 1];
+        turnTarget = new Road[turnCount];
+        turnTargetIndex = new int[turnCount];
+        turnTables = new AliasTable[roadCount][];
+        activeTurns = new AliasTable[roadCount];
+    }
+
+    /**
+     * Compile roads and intersections whose indexes are their positions in the lists.
+     * Turn options of a road come from its downstream intersection (getOutgoingOptions order).
+     */
+    public static CompiledNetwork compile(List<Road> roads, List<Intersection> intersections) {
+        int turns = 0;
+        for (Road r : roads) {
+            if (r.getTo() != null) turns += r.getTo().getOutgoingOptions(r).size();
+        }
+        CompiledNetwork net = new CompiledNetwork(roads.size(), turns);
+
+        int t = 0;
+        for (int i = 0; i < roads.size(); i++) {
+            Road r = roads.get(i);
+            if (r.getIndex() != i) throw new IllegalStateException("road " + r.getId() + " has index " + r.getIndex() + ", expected " + i);
+            net.roads[i] = r;
+            net.roadFrom[i] = r.getFrom() == null ? -1 : r.getFrom().getIndex();
+            net.roadTo[i] = r.getTo() == null ? -1 : r.getTo().getIndex();
+            net.roadRole[i] = RoadRole.of(r);
+            net.signal[i] = r.getTo() == null ? null : r.getTo().getLightForRoad(r);
+            net.turnStart[i] = t;
+            if (r.getTo() != null) {
+                for (Road next : r.getTo().getOutgoingOptions(r)) {
+                    net.turnTarget[t] = next;
+                    net.turnTargetIndex[t] = next.getIndex();
+                    t++;
+                }
+                net.turnTables[i] = buildTables(r.getTo().getTurnRatios(r));
+                net.activeTurns[i] = pick(net.turnTables[i], net.hour);
+            }
+        }
+        net.turnStart[roads.size()] = t;
+
+        for (Intersection in : intersections) in.setNetwork(net);
+        for (Road r : roads) r.setNetwork(net, net.roadRole[r.getIndex()], net.signal[r.getIndex()]);
+        return net;
+    }
+
+    public boolean isValid() { return valid; }
+
+    // ---------- turning ratios ----------
+
+    /**
+     * Select the hourly turn tables for the given hour of the day (0..23); no-op if unchanged.
+     */
+    public synchronized void setHour(int hour) {
+        if (hour == this.hour) return;
+        this.hour = hour;
+        for (int r = 0; r < turnTables.length; r++) {
+            if (turnTables[r] != null && turnTables[r].length > 1) activeTurns[r] = turnTables[r][hour];
+        }
+    }
+
+    public int getHour() { return hour; }
+
+    /**
+     * Rebuild the tables of one incoming road (called by Intersection.setTurnRatios).
+     */
+    synchronized void updateTurnRatios(Road incoming, double[][] ratios) {
+        int r = incoming.getIndex();
+        if (r < 0 || r >= roads.length || roads[r] != incoming || ratios[0].length != getTurnCount(r)) {
+            invalidate();
+            return;
+        }
+        turnTables[r] = buildTables(ratios);
+        activeTurns[r] = pick(turnTables[r], hour);
+    }
+
+    /**
+     * Alias table of a road's turns for the current hour, or null if its options are equally likely.
+     */
+    public AliasTable getTurnTable(int road) { return activeTurns[road]; }
+
+    private static AliasTable[] buildTables(double[][] ratios) {
+        if (ratios == null) return null;
+        AliasTable[] tables = new AliasTable[ratios.length];
+        for (int h = 0; h < ratios.length; h++) tables[h] = new AliasTable(ratios[h]);
+        return tables;
+    }
+
+    private static AliasTable pick(AliasTable[] tables, int hour) {
+        if (tables == null) return null;
+        return tables.length == 1 ? tables[0] : tables[hour];
+    }
+
+    /**
+     * Called when the topology changes; Road falls back to the object graph until recompiled.
+     */
+    void invalidate() { valid = false; }
+
+    // ---------- array access ----------
+
+    public int getRoadCount() { return roads.length; }
+    public Road getRoad(int road) { return roads[road]; }
+    public int getFrom(int road) { return roadFrom[road]; }
+    public int getTo(int road) { return roadTo[road]; }
+    public RoadRole getRole(int road) { return roadRole[road]; }
+    public TrafficLight getSignal(int road) { return signal[road]; }
+
+    public int getTurnCount(int road) { return turnStart[road + 1] - turnStart[road]; }
+
+    /**
+     * k-th turn option of a road (0 <= k < getTurnCount(road)).
+     */
+    public Road getTurn(int road, int k) { return turnTarget[turnStart[road] + k]; }
+    public int getTurnIndex(int road, int k) { return turnTargetIndex[turnStart[road] + k]; }
+}
\ No newline at end of file
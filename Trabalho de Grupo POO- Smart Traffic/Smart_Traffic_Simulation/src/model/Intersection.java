@@ -1,6 +1,9 @@
 package model;
 
+import util.FlightEvents;
+
 import java.util.*;
+import java.util.function.BiConsumer;
 
 /**
  * Intersection holds mapping road -> traffic light, queue helpers and optional priority preemption support.
@@ -8,7 +11,12 @@ import java.util.*;
  */
 public class Intersection {
     private final String id;
-    private final Map<Road, TrafficLight> lights = new HashMap<>();
+    private int index = -1; // dense index assigned by Simulation.addIntersection (for array-based strategies)
+    // insertion-ordered so strategies visit approaches in the same order on every run
+    private final Map<Road, TrafficLight> lights = new LinkedHashMap<>();
+    // array copy of lights in the same order, for allocation-free iteration (rebuilt after changes)
+    private Road[] approaches;
+    private TrafficLight[] approachLights;
 
     // Optional: suporte a preempção (priority) — pode ser usado por EmergencyVehicle
     private Road priorityRoad = null;
@@ -20,38 +28,99 @@ public class Intersection {
     // NEW: mapping from incoming road -> possible outgoing roads (turn options)
     private final Map<Road, List<Road>> outgoingOptions = new HashMap<>();
 
+    // optional turning ratios per incoming road: 1 row (all day) or 24 hourly rows, columns in option order
+    private final Map<Road, double[][]> turnRatios = new HashMap<>();
+
+    // compiled form this intersection is part of (invalidated when lights or turns change)
+    private CompiledNetwork network;
+    // bumped whenever lights or turns change, for strategies that cache this intersection's topology
+    private int topologyVersion;
+
     public Intersection(String id) {
         this.id = id;
     }
 
     public String getId() { return id; }
 
+    public int getIndex() { return index; }
+    public void setIndex(int index) { this.index = index; }
+
+    synchronized void setNetwork(CompiledNetwork network) { this.network = network; }
+
+    private void topologyChanged() {
+        topologyVersion++;
+        if (network != null) network.invalidate();
+    }
+
+    /**
+     * Changes every time an approach, outgoing road or turn option is added or replaced.
+     */
+    public synchronized int getTopologyVersion() { return topologyVersion; }
+
     public synchronized void addIncomingRoad(Road road, TrafficLight light) {
         lights.put(road, light);
+        light.attach(id, road.getId());
+        approaches = null;
+        topologyChanged();
+    }
+
+    private void ensureApproaches() {
+        if (approaches != null) return;
+        approaches = lights.keySet().toArray(new Road[0]);
+        approachLights = lights.values().toArray(new TrafficLight[0]);
+    }
+
+    /**
+     * Number of incoming roads with a light (approaches, in insertion order).
+     */
+    public synchronized int getApproachCount() {
+        ensureApproaches();
+        return approaches.length;
+    }
+
+    public synchronized Road getApproach(int i) {
+        ensureApproaches();
+        return approaches[i];
+    }
+
+    public synchronized TrafficLight getApproachLight(int i) {
+        ensureApproaches();
+        return approachLights[i];
+    }
+
+    /**
+     * Visit every approach and its light in insertion order, without iterator or copy.
+     */
+    public synchronized void forEachLight(BiConsumer<? super Road, ? super TrafficLight> visitor) {
+        ensureApproaches();
+        for (int i = 0; i < approaches.length; i++) visitor.accept(approaches[i], approachLights[i]);
+    }
+
+    /**
+     * Advance the internal timer of every light (no strategy decision).
+     */
+    public synchronized void updateLights(double dt) {
+        ensureApproaches();
+        for (TrafficLight l : approachLights) l.update(dt);
     }
 
     public synchronized TrafficLight getLightForRoad(Road r) {
         return lights.get(r);
     }
 
+    /**
+     * Live road -> light map (add approaches with addIncomingRoad so cached arrays stay in sync).
+     */
     public synchronized Map<Road, TrafficLight> getLights() {
         return lights;
     }
 
     /**
-     * Count vehicles that are near the end of the road and effectively waiting.
+     * Count vehicles that are near the end of the road and effectively waiting
+     * (Road.QUEUE_ZONE / Road.QUEUE_SPEED); read from the road's incremental counter.
      */
     public int countWaitingVehicles(Road r) {
-        int count = 0;
-        double waitingThreshold = 12.0; // meters from the stop line
-        double speedThreshold = 0.5; // m/s -> considered waiting
-        List<Vehicle> vs = r.getVehicles();
-        for (Vehicle v : vs) {
-            if (v.getPosition() >= r.getLength() - waitingThreshold && v.getSpeed() <= speedThreshold) {
-                count++;
-            }
-        }
-        return count;
+        return r.getQueuedCount();
     }
 
     /**
@@ -60,18 +129,33 @@ public class Intersection {
      */
     public synchronized void requestPriority(Road r, double durationSeconds) {
         if (!lights.containsKey(r)) return;
+
+        FlightEvents.PreemptionEvent ev = null;
+        if (FlightEvents.PREEMPTION.isEnabled()) {
+            ev = new FlightEvents.PreemptionEvent();
+            ev.begin();
+        }
+
         priorityRoad = r;
         priorityTimeRemaining = durationSeconds;
 
-        for (Map.Entry<Road, TrafficLight> e : lights.entrySet()) {
-            Road road = e.getKey();
-            TrafficLight tl = e.getValue();
+        ensureApproaches();
+        for (int i = 0; i < approaches.length; i++) {
+            Road road = approaches[i];
+            TrafficLight tl = approachLights[i];
             if (road.equals(r)) {
-                tl.setState(new model.state.GreenState(durationSeconds));
+                tl.setGreen(durationSeconds);
             } else {
-                tl.setState(new model.state.RedState(tl.getRedDuration()));
+                tl.setRed(tl.getRedDuration());
             }
         }
+
+        if (ev != null && ev.shouldCommit()) {
+            ev.intersection = id;
+            ev.road = r.getId();
+            ev.duration = durationSeconds;
+            ev.commit();
+        }
     }
 
     /**
@@ -98,13 +182,30 @@ public class Intersection {
         return priorityRoad;
     }
 
+    public synchronized double getPriorityTimeRemaining() {
+        return priorityTimeRemaining;
+    }
+
+    /**
+     * Restore a saved preemption without touching the lights (they are restored separately).
+     */
+    public synchronized void restorePriority(Road r, double timeRemaining) {
+        priorityRoad = r;
+        priorityTimeRemaining = timeRemaining;
+    }
+
     // ---------- NEW: outgoing roads management ----------
 
     /**
-     * Register an outgoing road starting at this intersection.
+     * Register an outgoing road starting at this intersection. Incoming roads that use the fallback
+     * options (every outgoing road) get a new option, so their turn ratios are dropped as in setOutgoingOptions.
      */
     public synchronized void addOutgoingRoad(Road r) {
-        if (!outgoingRoads.contains(r)) outgoingRoads.add(r);
+        if (!outgoingRoads.contains(r)) {
+            outgoingRoads.add(r);
+            turnRatios.keySet().removeIf(incoming -> !outgoingOptions.containsKey(incoming)); // ratios refer to the old options
+        }
+        topologyChanged();
     }
 
     /**
@@ -120,6 +221,73 @@ public class Intersection {
      */
     public synchronized void setOutgoingOptions(Road incoming, List<Road> options) {
         outgoingOptions.put(incoming, new ArrayList<>(options));
+        turnRatios.remove(incoming); // ratios refer to the old options
+        topologyChanged();
+    }
+
+    /**
+     * Turning probabilities for an incoming road, one weight per getOutgoingOptions(incoming) entry.
+     * Without ratios the options are equally likely.
+     */
+    public void setTurnRatios(Road incoming, double... weights) {
+        setTurnRatios(incoming, new double[][]{weights});
+    }
+
+    /**
+     * Time-of-day turning probabilities: 24 rows (hour 0..23) of weights in option order.
+     * A compiled network only rebuilds the alias tables of this road.
+     */
+    public synchronized void setTurnRatios(Road incoming, double[][] hourlyWeights) {
+        if (hourlyWeights.length != 1 && hourlyWeights.length != 24) {
+            throw new IllegalArgumentException("give 1 row (all day) or 24 hourly rows");
+        }
+        int options = getOutgoingOptions(incoming).size();
+        double[][] copy = new double[hourlyWeights.length][];
+        for (int h = 0; h < copy.length; h++) {
+            if (hourlyWeights[h].length != options) {
+                throw new IllegalArgumentException(incoming.getId() + " has " + options + " turn options, got " + hourlyWeights[h].length + " weights");
+            }
+            copy[h] = hourlyWeights[h].clone();
+            checkWeights(incoming, copy[h]);
+        }
+        // only valid rows are stored, so a later recompile cannot fail on them
+        turnRatios.put(incoming, copy);
+        if (network != null && network.isValid()) network.updateTurnRatios(incoming, copy);
+    }
+
+    /**
+     * Same rules as AliasTable: finite, non-negative weights with a positive sum.
+     */
+    private static void checkWeights(Road incoming, double[] weights) {
+        double sum = 0.0;
+        for (double w : weights) {
+            if (w < 0 || Double.isNaN(w) || Double.isInfinite(w)) {
+                throw new IllegalArgumentException("invalid turn weight " + w + " for " + incoming.getId());
+            }
+            sum += w;
+        }
+        if (!(sum > 0) || Double.isInfinite(sum)) {
+            throw new IllegalArgumentException("turn weights of " + incoming.getId() + " must have a positive, finite sum");
+        }
+    }
+
+    /**
+     * Turning ratios of an incoming road (1 or 24 rows), or null if options are equally likely.
+     */
+    public synchronized double[][] getTurnRatios(Road incoming) {
+        double[][] r = turnRatios.get(incoming);
+        if (r == null) return null;
+        double[][] copy = new double[r.length][];
+        for (int h = 0; h < r.length; h++) copy[h] = r[h].clone();
+        return copy;
+    }
+
+    /**
+     * Options set with setOutgoingOptions for this road, or null if it uses the fallback.
+     */
+    public synchronized List<Road> getConfiguredOptions(Road incoming) {
+        List<Road> opts = outgoingOptions.get(incoming);
+        return opts == null ? null : Collections.unmodifiableList(opts);
     }
 
     /**
@@ -0,0 +1,201 @@
+package model;
+
+import util.RandomStream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Lane-at-a-time car-following update over primitive arrays (scalar implementation).
+ *
+ * Same model as Vehicle.update: gap to the leader, 2 m + 1 s safe distance, stop for a red light
+ * inside the reaction zone, clamped acceleration/braking, then position integration. The difference
+ * is that every vehicle of a lane reads the leader's state from the start of the step (synchronous
+ * update), which is what lets VectorLaneKernel process several vehicles per instruction.
+ *
+ * Use create(true) to get the vector kernel when jdk.incubator.vector is available and it matches
+ * this implementation; otherwise this scalar one is returned.
+ */
+public class LaneKernel {
+    // model constants (mirror Vehicle.update)
+    static final double MAX_SPEED = 18.0;
+    static final double ACCEL = 4.0;
+    static final double BRAKE = 8.0;
+    static final double REACTION_ZONE = 8.0;
+    static final double MIN_GAP = 2.0;
+    static final double HEADWAY = 1.0;
+    static final double LEADER_MARGIN = 1.0;
+    static final double STOP_MARGIN = 0.5;
+
+    /** maximum difference accepted when checking the vector kernel against this one */
+    public static final double TOLERANCE = 1e-9;
+
+    // scratch arrays, reused between lanes (a kernel instance is not thread-safe)
+    private double[] pos = new double[64];
+    private double[] speed = new double[64];
+    private double[] len = new double[64];
+    private double[] outPos = new double[64];
+    private double[] outSpeed = new double[64];
+    private final List<Vehicle> reachedEnd = new ArrayList<>();
+
+    /**
+     * Scalar kernel if preferVector is false or the vector kernel is unavailable/fails verification.
+     */
+    public static LaneKernel create(boolean preferVector) {
+        if (!preferVector) return new LaneKernel();
+        try {
+            LaneKernel v = (LaneKernel) Class.forName("model.VectorLaneKernel").getDeclaredConstructor().newInstance();
+            if (verify(new LaneKernel(), v, 200, 1L) <= TOLERANCE) return v;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // module not added (--add-modules jdk.incubator.vector): fall through
+        }
+        return new LaneKernel();
+    }
+
+    public String getName() { return "scalar"; }
+
+    /**
+     * Advance one lane. Arrays are sorted leader first (position descending), n entries;
+     * red means the light at the end of the road does not allow passage.
+     * Results go to outPos/outSpeed; the inputs are not modified.
+     */
+    public void step(double[] pos, double[] speed, double[] len, int n, double roadLength, boolean red,
+                     double dt, double[] outPos, double[] outSpeed) {
+        for (int i = 0; i < n; i++) stepOne(pos, speed, len, i, roadLength, red, dt, outPos, outSpeed);
+    }
+
+    static void stepOne(double[] pos, double[] speed, double[] len, int i, double roadLength, boolean red,
+                        double dt, double[] outPos, double[] outSpeed) {
+        double p = pos[i];
+        double v = speed[i];
+
+        double desired = MAX_SPEED;
+        if (i > 0) {
+            double gap = pos[i - 1] - p - len[i - 1];
+            if (gap < v * HEADWAY + MIN_GAP) {
+                desired = Math.min(MAX_SPEED, Math.max(0.0, speed[i - 1] - LEADER_MARGIN));
+            }
+        }
+
+        double dist = roadLength - p;
+        boolean stop = red && dist < REACTION_ZONE;
+        if (stop) desired = 0.0;
+
+        if (v < desired) v = Math.min(v + ACCEL * dt, desired);
+        else v = Math.max(v - BRAKE * dt, desired);
+
+        double delta = v * dt;
+        if (stop && delta > dist) {
+            delta = Math.max(dist - STOP_MARGIN, 0.0);
+            v = 0.0;
+        }
+        outPos[i] = p + delta;
+        outSpeed[i] = v;
+    }
+
+    // ---------- driving roads ----------
+
+    /**
+     * Advance every vehicle on the given roads by dt, lane by lane, then move the vehicles that
+     * reached the end of their road (so a vehicle is never stepped twice in one tick).
+     */
+    public void stepRoads(List<Road> roads, double dt) {
+        reachedEnd.clear();
+        for (int r = 0; r < roads.size(); r++) roads.get(r).stepLanes(this, dt, reachedEnd);
+        for (int i = 0; i < reachedEnd.size(); i++) reachedEnd.get(i).advanceToNextRoad();
+        reachedEnd.clear();
+    }
+
+    /**
+     * Called by Road (holding its lock) for one lane, already sorted leader first.
+     */
+    void stepLane(List<Vehicle> lane, double roadLength, boolean red, double dt, List<Vehicle> reachedEnd) {
+        int n = lane.size();
+        if (n == 0) return;
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            Vehicle v = lane.get(i);
+            pos[i] = v.getPosition();
+            speed[i] = v.getSpeed();
+            len[i] = v.getLength();
+        }
+        step(pos, speed, len, n, roadLength, red, dt, outPos, outSpeed);
+        for (int i = 0; i < n; i++) {
+            Vehicle v = lane.get(i);
+            if (v.applyLaneStep(outPos[i], outSpeed[i], dt)) reachedEnd.add(v);
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (pos.length >= n) return;
+        int cap = Math.max(n, pos.length * 2);
+        pos = new double[cap];
+        speed = new double[cap];
+        len = new double[cap];
+        outPos = new double[cap];
+        outSpeed = new double[cap];
+    }
+
+    // ---------- verification ----------
+
+    /**
+     * Run both kernels on the same random lanes (queues at a red light, free flow, mixed lengths)
+     * and return the largest difference in position or speed.
+     */
+    public static double verify(LaneKernel expected, LaneKernel actual, int lanes, long seed) {
+        RandomStream rnd = new RandomStream(seed);
+        double maxErr = 0.0;
+        for (int l = 0; l < lanes; l++) {
+            int n = 1 + rnd.nextInt(300);
+            double roadLength = 50 + rnd.nextDouble() * 500;
+            double[] p = new double[n];
+            double[] v = new double[n];
+            double[] len = new double[n];
+            double x = roadLength - rnd.nextDouble() * 10;
+            for (int i = 0; i < n; i++) {
+                p[i] = x;
+                v[i] = rnd.nextDouble() * LaneKernel.MAX_SPEED;
+                len[i] = 4.5 + (rnd.nextInt(4) == 0 ? 8.0 : 0.0);
+                x -= len[i] + rnd.nextDouble() * 20;
+            }
+            boolean red = rnd.nextInt(2) == 0;
+            double dt = 0.05 * (1 + rnd.nextInt(4));
+            double[] ep = new double[n], es = new double[n], ap = new double[n], as = new double[n];
+            expected.step(p, v, len, n, roadLength, red, dt, ep, es);
+            actual.step(p, v, len, n, roadLength, red, dt, ap, as);
+            for (int i = 0; i < n; i++) {
+                maxErr = Math.max(maxErr, Math.abs(ep[i] - ap[i]));
+                maxErr = Math.max(maxErr, Math.abs(es[i] - as[i]));
+            }
+        }
+        return maxErr;
+    }
+
+    /**
+     * Verify the vector kernel and compare throughput. Needs --add-modules jdk.incubator.vector.
+     * Usage: java --add-modules jdk.incubator.vector model.LaneKernel [laneLength] [iterations]
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        int iters = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        LaneKernel scalar = new LaneKernel();
+        LaneKernel best = create(true);
+        System.out.println("kernel: " + best.getName());
+        System.out.printf(Locale.ROOT, "max |vector - scalar| = %.3g%n", verify(scalar, best, 500, 7L));
+
+        double[] p = new double[n], v = new double[n], len = new double[n], op = new double[n], os = new double[n];
+        for (int i = 0; i < n; i++) {
+            p[i] = (n - i) * 7.0;
+            v[i] = (i % 19);
+            len[i] = 4.5;
+        }
+        for (LaneKernel k : new LaneKernel[]{scalar, best}) {
+            for (int i = 0; i < iters / 4; i++) k.step(p, v, len, n, n * 7.0 + 5, true, 0.05, op, os); // warm-up
+            long t0 = System.nanoTime();
+            for (int i = 0; i < iters; i++) k.step(p, v, len, n, n * 7.0 + 5, true, 0.05, op, os);
+            double ns = (System.nanoTime() - t0) / ((double) iters * n);
+            System.out.printf(Locale.ROOT, "%-8s %.2f ns/vehicle%n", k.getName(), ns);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,249 @@
+package model;
+
+import util.AliasTable;
+import util.RandomStream;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves the vehicles of a VehicleStore over a CompiledNetwork, reading and writing the off-heap
+ * records directly: no Vehicle objects, no per-tick allocation.
+ *
+ * Same car-following model as LaneKernel (synchronous: each vehicle reacts to its leader's state
+ * from the start of the step), walked lane by lane along the FIFO links. Vehicles that reach the end
+ * of a road are moved on after all roads were stepped. Turns use the network's alias tables (or a
+ * uniform draw) from one random stream owned by the engine. The engine keeps the roads' queue
+ * counters up to date so signal strategies see off-heap vehicles too; density bins are not updated.
+ */
+public final class OffHeapEngine implements AutoCloseable {
+    private static final double LENGTH = 4.5; // all off-heap vehicles use the default Vehicle length
+
+    private final VehicleStore store;
+    private final RandomStream rng;
+
+    // per-road copies of the network, refreshed when the network changes
+    private CompiledNetwork network;
+    private double[] roadLength = new double[0];
+    private int[] queuedDelta = new int[0];
+    private int[] haltedDelta = new int[0];
+
+    // routes registered by spawn (road indexes, without the origin)
+    private final Map<List<Road>, Integer> routeIds = new IdentityHashMap<>();
+    private int[][] routes = new int[0][];
+
+    // vehicles that reached the end of their road this step
+    private int[] arrived = new int[256];
+
+    private long completed;
+    private double completedWaiting;
+    private double waitingDelta; // change of the active vehicles' total waiting since takeWaitingDelta
+
+    public OffHeapEngine(int capacity, RandomStream rng) {
+        this.store = new VehicleStore(capacity);
+        this.rng = rng;
+    }
+
+    public VehicleStore getStore() { return store; }
+    public int getActiveCount() { return store.getActiveCount(); }
+    public long getCompleted() { return completed; }
+
+    /** sum of waiting times of vehicles that left the world */
+    public double getCompletedWaiting() { return completedWaiting; }
+
+    /**
+     * How much the summed waiting time of the vehicles in the world changed since the last call
+     * (waiting added by steps minus the waiting of vehicles that left), for incremental averages.
+     */
+    public double takeWaitingDelta() {
+        double d = waitingDelta;
+        waitingDelta = 0.0;
+        return d;
+    }
+
+    /**
+     * Mean waiting time of the vehicles currently in the world (walks the store).
+     */
+    public double getMeanWaiting() {
+        int n = 0;
+        double sum = 0.0;
+        for (int s = 0; s < store.getCapacity(); s++) {
+            if (!store.isAlive(s)) continue;
+            sum += store.getWaiting(s);
+            n++;
+        }
+        return n == 0 ? 0.0 : sum / n;
+    }
+
+    // ---------- spawning ----------
+
+    /**
+     * Place a vehicle at position on lane 0 of road if the last vehicle of that lane is at least
+     * clearance meters in. Returns false if the entry is blocked or the store is full.
+     */
+    public boolean spawn(long id, Road road, double position, double clearance, List<Road> route) {
+        int r = road.getIndex();
+        store.ensureRoads(r + 1);
+        int tail = store.tail(r, 0);
+        if (tail >= 0 && store.getPosition(tail) < clearance) return false;
+        int s = store.allocate(id, r, 0, position, route == null ? -1 : routeId(route));
+        if (s < 0) return false;
+        store.pushBack(s);
+        return true;
+    }
+
+    private int routeId(List<Road> route) {
+        Integer id = routeIds.get(route);
+        if (id != null) return id;
+        int[] packed = new int[route.size()];
+        for (int i = 0; i < packed.length; i++) packed[i] = route.get(i).getIndex();
+        routes = Arrays.copyOf(routes, routes.length + 1);
+        routes[routes.length - 1] = packed;
+        routeIds.put(route, routes.length - 1);
+        return routes.length - 1;
+    }
+
+    // ---------- stepping ----------
+
+    /**
+     * Advance every vehicle by dt on the given (current) network.
+     */
+    public void step(CompiledNetwork net, double dt) {
+        if (net != network) bind(net);
+        int roads = net.getRoadCount();
+        int nArrived = 0;
+
+        for (int r = 0; r < roads; r++) {
+            TrafficLight light = net.getSignal(r);
+            boolean red = light != null && !light.allowsPassage();
+            double length = roadLength[r];
+            for (int lane = 0; lane < 2; lane++) {
+                // leader's state from the start of the step
+                double leadPos = 0.0, leadSpeed = 0.0;
+                boolean hasLeader = false;
+                for (int s = store.head(r, lane); s >= 0; s = store.getFollower(s)) {
+                    double p = store.getPosition(s);
+                    double v = store.getSpeed(s);
+
+                    double desired = LaneKernel.MAX_SPEED;
+                    if (hasLeader) {
+                        double gap = leadPos - p - LENGTH;
+                        if (gap < v * LaneKernel.HEADWAY + LaneKernel.MIN_GAP) {
+                            desired = Math.min(LaneKernel.MAX_SPEED, Math.max(0.0, leadSpeed - LaneKernel.LEADER_MARGIN));
+                        }
+                    }
+                    double dist = length - p;
+                    boolean stop = red && dist < LaneKernel.REACTION_ZONE;
+                    if (stop) desired = 0.0;
+
+                    double nv = v < desired ? Math.min(v + LaneKernel.ACCEL * dt, desired)
+                                            : Math.max(v - LaneKernel.BRAKE * dt, desired);
+                    double delta = nv * dt;
+                    if (stop && delta > dist) {
+                        delta = Math.max(dist - LaneKernel.STOP_MARGIN, 0.0);
+                        nv = 0.0;
+                    }
+                    double np = p + delta;
+                    store.setPosition(s, np);
+                    store.setSpeed(s, nv);
+                    if (nv < 0.1) {
+                        store.setWaiting(s, store.getWaiting(s) + dt);
+                        waitingDelta += dt;
+                    }
+                    updateQueueFlags(s, r, np, nv, length);
+
+                    if (np >= length - 0.01) {
+                        if (nArrived == arrived.length) arrived = Arrays.copyOf(arrived, nArrived * 2);
+                        arrived[nArrived++] = s;
+                    }
+                    leadPos = p;
+                    leadSpeed = v;
+                    hasLeader = true;
+                }
+            }
+        }
+
+        // arrivals are lane leaders, in lane order: pop them and move them on
+        for (int i = 0; i < nArrived; i++) {
+            int s = arrived[i];
+            int r = store.getRoad(s);
+            if (store.head(r, store.getLane(s)) != s) continue; // overlapping its leader: leaves next step
+            store.popFront(r, store.getLane(s));
+            clearQueueFlags(s, r);
+            advance(net, s, r);
+        }
+
+        for (int r = 0; r < roads; r++) {
+            if (queuedDelta[r] != 0 || haltedDelta[r] != 0) {
+                net.getRoad(r).adjustQueueCounts(queuedDelta[r], haltedDelta[r]);
+                queuedDelta[r] = 0;
+                haltedDelta[r] = 0;
+            }
+        }
+    }
+
+    private void advance(CompiledNetwork net, int s, int r) {
+        int next = -1;
+        int route = store.getRoute(s);
+        int cursor = store.getRouteCursor(s);
+        if (route >= 0 && cursor < routes[route].length) {
+            next = routes[route][cursor];
+            store.setRouteCursor(s, cursor + 1);
+        } else if (net.getTo(r) >= 0) {
+            int count = net.getTurnCount(r);
+            if (count > 0) {
+                AliasTable turns = net.getTurnTable(r);
+                next = net.getTurnIndex(r, turns != null ? turns.sample(rng) : rng.nextInt(count));
+            }
+        }
+        if (next < 0) {
+            // leaves the world
+            completed++;
+            completedWaiting += store.getWaiting(s);
+            waitingDelta -= store.getWaiting(s);
+            store.free(s);
+            return;
+        }
+        RoadRole role = net.getRole(next);
+        int lane = role == RoadRole.INBOUND ? 0 : role == RoadRole.OUTBOUND ? 1 : store.getLane(s);
+        store.setRoad(s, next);
+        store.setLane(s, lane);
+        store.setPosition(s, 0.1);
+        store.pushBack(s);
+    }
+
+    private void updateQueueFlags(int s, int r, double position, double speed, double length) {
+        int flags = store.getFlags(s);
+        boolean halted = speed <= Road.QUEUE_SPEED;
+        boolean queued = halted && position >= length - Road.QUEUE_ZONE;
+        int next = VehicleStore.ALIVE | (queued ? VehicleStore.QUEUED : 0) | (halted ? VehicleStore.HALTED : 0);
+        if (next == flags) return;
+        queuedDelta[r] += (queued ? 1 : 0) - ((flags & VehicleStore.QUEUED) != 0 ? 1 : 0);
+        haltedDelta[r] += (halted ? 1 : 0) - ((flags & VehicleStore.HALTED) != 0 ? 1 : 0);
+        store.setFlags(s, next);
+    }
+
+    private void clearQueueFlags(int s, int r) {
+        int flags = store.getFlags(s);
+        if ((flags & VehicleStore.QUEUED) != 0) queuedDelta[r]--;
+        if ((flags & VehicleStore.HALTED) != 0) haltedDelta[r]--;
+        store.setFlags(s, VehicleStore.ALIVE);
+    }
+
+    private void bind(CompiledNetwork net) {
+        int roads = net.getRoadCount();
+        store.ensureRoads(roads);
+        roadLength = new double[roads];
+        for (int r = 0; r < roads; r++) roadLength[r] = net.getRoad(r).getLength();
+        queuedDelta = Arrays.copyOf(queuedDelta, roads);
+        haltedDelta = Arrays.copyOf(haltedDelta, roads);
+        network = net;
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+}
\ No newline at end of file
@@ -3,6 +3,7 @@ package model;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Road holds vehicles in two lanes (lane 0 and lane 1).
@@ -10,22 +11,46 @@ import java.util.List;
  * lane 1: outbound / opposite lane.
  *
  * This keeps a simple two-lane structure without creating many Road objects.
+ *
+ * The road is also split into fixed-length bins holding vehicle count and speed sum (both lanes),
+ * kept up to date incrementally by Vehicle so density/speed overlays never scan the vehicles.
+ * The same hooks keep counts of halted vehicles (and of those near the stop line) for signal strategies.
  */
 public class Road {
     private final String id;
     private final double length; // meters
     private final Intersection from;
     private final Intersection to;
+    private int index = -1; // dense index assigned by Simulation.addRoad
+
+    // compiled view (set by CompiledNetwork.compile, used while the network is valid)
+    private CompiledNetwork network;
+    private RoadRole role;
+    private TrafficLight signal;
 
     // two lanes
     private final List<Vehicle> lane0 = new ArrayList<>();
     private final List<Vehicle> lane1 = new ArrayList<>();
 
+    // density / speed bins along the road
+    public static final double BIN_LENGTH = 25.0; // meters
+    private final int[] binCount;
+    private final double[] binSpeedSum;
+
+    // queue at the downstream end (same thresholds Intersection.countWaitingVehicles always used)
+    public static final double QUEUE_ZONE = 12.0;  // meters from the stop line
+    public static final double QUEUE_SPEED = 0.5;  // m/s -> considered waiting
+    private int queued;
+    private int halted; // vehicles at or below QUEUE_SPEED anywhere on the road
+
     public Road(String id, double length, Intersection from, Intersection to) {
         this.id = id;
         this.length = length;
         this.from = from;
         this.to = to;
+        int bins = Math.max(1, (int) Math.ceil(length / BIN_LENGTH));
+        this.binCount = new int[bins];
+        this.binSpeedSum = new double[bins];
     }
 
     public String getId() { return id; }
@@ -36,22 +61,139 @@ public class Road {
 
     public Intersection getFrom() { return from; }
 
+    public int getIndex() { return index; }
+    public void setIndex(int index) { this.index = index; }
+
+    void setNetwork(CompiledNetwork network, RoadRole role, TrafficLight signal) {
+        this.network = network;
+        this.role = role;
+        this.signal = signal;
+    }
+
+    /**
+     * Compiled network this road belongs to, or null if not compiled / outdated.
+     */
+    public CompiledNetwork getNetwork() {
+        CompiledNetwork n = network;
+        return n != null && n.isValid() ? n : null;
+    }
+
+    /**
+     * Light controlling the downstream end of this road (array read once compiled).
+     */
+    public TrafficLight getSignal() {
+        if (getNetwork() != null) return signal;
+        return to == null ? null : to.getLightForRoad(this);
+    }
+
+    public RoadRole getRole() {
+        return getNetwork() != null ? role : RoadRole.of(this);
+    }
+
     /**
      * Add vehicle to the lane indicated by Vehicle.getLane().
      */
     public synchronized void addVehicle(Vehicle v) {
         int lane = v.getLane();
-        if (lane == 0) lane0.add(v);
-        else lane1.add(v);
+        List<Vehicle> list = lane == 0 ? lane0 : lane1;
+        // vehicles behind the new one can no longer trust their free-flow budget
+        for (int i = 0; i < list.size(); i++) {
+            Vehicle other = list.get(i);
+            if (other.getPosition() < v.getPosition()) other.resetFreeFlow();
+        }
+        list.add(v);
+        enterBin(v);
     }
 
     public synchronized void removeVehicle(Vehicle v) {
-        lane0.remove(v);
-        lane1.remove(v);
+        boolean removed = lane0.remove(v);
+        removed |= lane1.remove(v);
+        if (removed) leaveBin(v);
+    }
+
+    // ---------- density / speed bins ----------
+
+    private int binOf(double position) {
+        int b = (int) (position / BIN_LENGTH);
+        return b < 0 ? 0 : Math.min(b, binCount.length - 1);
+    }
+
+    private void enterBin(Vehicle v) {
+        int b = binOf(v.getPosition());
+        binCount[b]++;
+        binSpeedSum[b] += v.getSpeed();
+        v.binIndex = b;
+        v.binSpeed = v.getSpeed();
+        if (v.getSpeed() <= QUEUE_SPEED) {
+            halted++;
+            v.halted = true;
+            if (v.getPosition() >= length - QUEUE_ZONE) {
+                queued++;
+                v.queued = true;
+            }
+        }
+    }
+
+    private void leaveBin(Vehicle v) {
+        int b = v.binIndex;
+        if (b < 0) return;
+        binCount[b]--;
+        binSpeedSum[b] -= v.binSpeed;
+        if (binCount[b] == 0) binSpeedSum[b] = 0.0; // drop accumulated rounding error
+        v.binIndex = -1;
+        if (v.halted) {
+            halted--;
+            v.halted = false;
+        }
+        if (v.queued) {
+            queued--;
+            v.queued = false;
+        }
+    }
+
+    /**
+     * Called by Vehicle after it moved on this road: O(1) update of its bin contribution.
+     */
+    synchronized void updateBin(Vehicle v) {
+        leaveBin(v);
+        enterBin(v);
+    }
+
+    public int getBinCount() { return binCount.length; }
+
+    /**
+     * Vehicles waiting at the end of this road (both lanes), maintained incrementally: O(1).
+     */
+    public synchronized int getQueuedCount() { return queued; }
+
+    /**
+     * Counter changes for vehicles kept outside this road's lanes (OffHeapEngine).
+     */
+    synchronized void adjustQueueCounts(int dQueued, int dHalted) {
+        queued += dQueued;
+        halted += dHalted;
+    }
+
+    /**
+     * Stopped vehicles anywhere on this road (whole queue, not only its head): O(1).
+     */
+    public synchronized int getHaltedCount() { return halted; }
+
+    /**
+     * Vehicles currently in bin i (both lanes).
+     */
+    public synchronized int getBinVehicles(int i) { return binCount[i]; }
+
+    /**
+     * Mean speed (m/s) of vehicles in bin i, or -1 if the bin is empty.
+     */
+    public synchronized double getBinMeanSpeed(int i) {
+        return binCount[i] == 0 ? -1.0 : binSpeedSum[i] / binCount[i];
     }
 
     /**
      * Return all vehicles on this road (both lanes) as an unmodifiable list.
+     * This is a copy; loops that run every tick or frame should use forEachVehicle.
      */
     public synchronized List<Vehicle> getVehicles() {
         List<Vehicle> out = new ArrayList<>(lane0.size() + lane1.size());
@@ -60,14 +202,77 @@ public class Road {
         return Collections.unmodifiableList(out);
     }
 
+    public synchronized int getVehicleCount() {
+        return lane0.size() + lane1.size();
+    }
+
+    /**
+     * True if no vehicle of the lane is within the first clearance meters (spawn check, no copy).
+     */
+    public synchronized boolean isEntryClear(int lane, double clearance) {
+        if (binCount[0] == 0 && clearance <= BIN_LENGTH) return true; // first bin empty in both lanes
+        List<Vehicle> list = lane == 0 ? lane0 : lane1;
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i).getPosition() < clearance) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Visit every vehicle on this road (lane 0, then lane 1) without copying the lanes.
+     * The visitor must not add or remove vehicles of this road.
+     */
+    public synchronized void forEachVehicle(Consumer<? super Vehicle> visitor) {
+        for (int i = 0; i < lane0.size(); i++) visitor.accept(lane0.get(i));
+        for (int i = 0; i < lane1.size(); i++) visitor.accept(lane1.get(i));
+    }
+
     /**
-     * Get vehicles in the specified lane (0 or 1).
+     * Visit the vehicles of one lane (0 or 1) without copying it.
+     */
+    public synchronized void forEachVehicleInLane(int lane, Consumer<? super Vehicle> visitor) {
+        List<Vehicle> list = lane == 0 ? lane0 : lane1;
+        for (int i = 0; i < list.size(); i++) visitor.accept(list.get(i));
+    }
+
+    /**
+     * Get vehicles in the specified lane (0 or 1), as a copy (see forEachVehicleInLane).
      */
     public synchronized List<Vehicle> getVehiclesInLane(int lane) {
         if (lane == 0) return Collections.unmodifiableList(new ArrayList<>(lane0));
         else return Collections.unmodifiableList(new ArrayList<>(lane1));
     }
 
+    /**
+     * Lane-kernel step: sort each lane leader first and let the kernel advance it.
+     * Vehicles that reached the end are added to reachedEnd (moved on by the caller).
+     */
+    synchronized void stepLanes(LaneKernel kernel, double dt, List<Vehicle> reachedEnd) {
+        TrafficLight light = getSignal();
+        boolean red = light != null && !light.allowsPassage();
+        sortLeaderFirst(lane0);
+        sortLeaderFirst(lane1);
+        kernel.stepLane(lane0, length, red, dt, reachedEnd);
+        kernel.stepLane(lane1, length, red, dt, reachedEnd);
+    }
+
+    /**
+     * Insertion sort by position, leader first: lanes are already in order from the previous tick
+     * (overtaking is rare), so this is one pass and, unlike List.sort on long lanes, allocates nothing.
+     */
+    private static void sortLeaderFirst(List<Vehicle> lane) {
+        for (int i = 1; i < lane.size(); i++) {
+            Vehicle v = lane.get(i);
+            int j = i - 1;
+            if (lane.get(j).getPosition() >= v.getPosition()) continue;
+            while (j >= 0 && lane.get(j).getPosition() < v.getPosition()) {
+                lane.set(j + 1, lane.get(j));
+                j--;
+            }
+            lane.set(j + 1, v);
+        }
+    }
+
     /**
      * Return the vehicle ahead of the given one on this road in the same lane, or null.
      */
@@ -75,7 +280,8 @@ public class Road {
         int lane = v.getLane();
         List<Vehicle> list = (lane == 0) ? lane0 : lane1;
         Vehicle ahead = null;
-        for (Vehicle other : list) {
+        for (int i = 0; i < list.size(); i++) {
+            Vehicle other = list.get(i);
             if (other == v) continue;
             if (other.getPosition() > v.getPosition()) {
                 if (ahead == null || other.getPosition() < ahead.getPosition()) {
@@ -0,0 +1,23 @@
+package model;
+
+/**
+ * Role of a road in the network, fixed when the network is compiled.
+ * Decides the lane a vehicle takes when it enters the road.
+ */
+public enum RoadRole {
+    INBOUND,  // towards an intersection (lane 0)
+    OUTBOUND, // away from an intersection (lane 1)
+    LINK;     // anything else: vehicles keep their lane
+
+    /**
+     * Sample worlds name roads "*_in"/"*_out"; otherwise the role follows the topology.
+     */
+    static RoadRole of(Road r) {
+        String id = r.getId();
+        if (id.endsWith("_in")) return INBOUND;
+        if (id.endsWith("_out")) return OUTBOUND;
+        if (r.getFrom() == null && r.getTo() != null) return INBOUND;
+        if (r.getTo() == null && r.getFrom() != null) return OUTBOUND;
+        return LINK;
+    }
+}
\ No newline at end of file
@@ -19,14 +19,14 @@ public class Sensor {
      * Count vehicles considered waiting near the end of the road.
      */
     public int countWaiting() {
-        int count = 0;
-        for (Vehicle v : road.getVehicles()) {
+        int[] count = {0};
+        road.forEachVehicle(v -> {
             double distanceToEnd = road.getLength() - v.getPosition();
             if (distanceToEnd <= waitingThresholdMeters && v.getSpeed() <= speedThreshold) {
-                count++;
+                count[0]++;
             }
-        }
-        return count;
+        });
+        return count[0];
     }
 
     public Road getRoad() { return road; }
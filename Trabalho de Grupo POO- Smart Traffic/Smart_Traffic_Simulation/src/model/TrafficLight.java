@@ -1,11 +1,16 @@
 package model;
 
+import model.state.GreenState;
+import model.state.RedState;
 import model.state.TrafficLightState;
+import model.state.YellowState;
+import util.FlightEvents;
 
 /**
  * TrafficLight using the State pattern.
  *
  * Delegates time progression to the current TrafficLightState instance.
+ * setGreen/setYellow/setRed reuse one state object per color, so switching allocates nothing.
  */
 public class TrafficLight {
     private TrafficLightState state;
@@ -15,15 +20,30 @@ public class TrafficLight {
     private final double yellowDuration;
     private final double redDuration;
 
+    // owner and approach, set by Intersection.addIncomingRoad (for flight events)
+    private String intersectionId;
+    private String roadId;
+
+    // reusable state instances (created on first use)
+    private GreenState green;
+    private YellowState yellow;
+    private RedState red;
+
     public TrafficLight(double greenDuration, double yellowDuration, double redDuration) {
         this.greenDuration = greenDuration;
         this.yellowDuration = yellowDuration;
         this.redDuration = redDuration;
         // default to red
-        this.state = new model.state.RedState(redDuration);
+        this.red = new RedState(redDuration);
+        this.state = red;
         this.state.enter(this);
     }
 
+    synchronized void attach(String intersection, String road) {
+        this.intersectionId = intersection;
+        this.roadId = road;
+    }
+
     /**
      * Called every tick by the simulation, dt in seconds.
      */
@@ -35,6 +55,15 @@ public class TrafficLight {
      * Internal API used by states to request a transition.
      */
     public synchronized void changeState(TrafficLightState newState) {
+        if (FlightEvents.SIGNAL_CHANGE.isEnabled()) {
+            FlightEvents.SignalChangeEvent ev = new FlightEvents.SignalChangeEvent();
+            ev.intersection = intersectionId;
+            ev.road = roadId;
+            ev.from = state == null ? null : state.getColor().name();
+            ev.to = newState == null ? null : newState.getColor().name();
+            ev.state = newState == null ? null : newState.getClass().getSimpleName();
+            ev.commit();
+        }
         this.state = newState;
         if (this.state != null) this.state.enter(this);
     }
@@ -46,6 +75,44 @@ public class TrafficLight {
         changeState(newState);
     }
 
+    /**
+     * Switch to green for duration seconds (reuses this light's GreenState).
+     */
+    public synchronized void setGreen(double duration) {
+        if (green == null) green = new GreenState(duration);
+        else green.setDuration(duration);
+        changeState(green);
+    }
+
+    /**
+     * Switch to yellow for duration seconds (reuses this light's YellowState).
+     */
+    public synchronized void setYellow(double duration) {
+        if (yellow == null) yellow = new YellowState(duration);
+        else yellow.setDuration(duration);
+        changeState(yellow);
+    }
+
+    /**
+     * Switch to red for duration seconds (reuses this light's RedState).
+     */
+    public synchronized void setRed(double duration) {
+        if (red == null) red = new RedState(duration);
+        else red.setDuration(duration);
+        changeState(red);
+    }
+
+    /**
+     * Put back a saved state as-is (no enter(), so its elapsed time is kept). Used by checkpoint restore.
+     */
+    public synchronized void restoreState(TrafficLightState savedState) {
+        this.state = savedState;
+    }
+
+    public synchronized TrafficLightState getState() {
+        return state;
+    }
+
     /**
      * Public read-only color used by vehicles/UI.
      */
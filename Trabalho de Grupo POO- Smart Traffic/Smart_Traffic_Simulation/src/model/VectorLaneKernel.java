@@ -0,0 +1,63 @@
+package model;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * LaneKernel using jdk.incubator.vector: SPECIES_PREFERRED lanes at a time (4 doubles on AVX2,
+ * 8 on AVX-512), the first vehicle (no leader) and the tail handled by the scalar code.
+ * Only loaded through LaneKernel.create, so the rest of the program runs without the module.
+ */
+class VectorLaneKernel extends LaneKernel {
+    private static final VectorSpecies<Double> S = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public String getName() { return "vector" + S.length(); }
+
+    @Override
+    public void step(double[] pos, double[] speed, double[] len, int n, double roadLength, boolean red,
+                     double dt, double[] outPos, double[] outSpeed) {
+        if (n == 0) return;
+        stepOne(pos, speed, len, 0, roadLength, red, dt, outPos, outSpeed);
+
+        double accelStep = ACCEL * dt;
+        double brakeStep = BRAKE * dt;
+        int i = 1;
+        int upper = 1 + S.loopBound(n - 1);
+        for (; i < upper; i += S.length()) {
+            DoubleVector p = DoubleVector.fromArray(S, pos, i);
+            DoubleVector v = DoubleVector.fromArray(S, speed, i);
+            DoubleVector leadPos = DoubleVector.fromArray(S, pos, i - 1);
+            DoubleVector leadSpeed = DoubleVector.fromArray(S, speed, i - 1);
+            DoubleVector leadLen = DoubleVector.fromArray(S, len, i - 1);
+
+            // follow the leader when closer than the safe distance
+            DoubleVector gap = leadPos.sub(p).sub(leadLen);
+            VectorMask<Double> close = gap.lt(v.mul(HEADWAY).add(MIN_GAP));
+            DoubleVector follow = leadSpeed.sub(LEADER_MARGIN).max(0.0).min(MAX_SPEED);
+            DoubleVector desired = DoubleVector.broadcast(S, MAX_SPEED).blend(follow, close);
+
+            // red light inside the reaction zone
+            DoubleVector dist = DoubleVector.broadcast(S, roadLength).sub(p);
+            VectorMask<Double> stop = red ? dist.lt(REACTION_ZONE) : S.maskAll(false);
+            desired = desired.blend(0.0, stop);
+
+            // accelerate or brake towards the desired speed
+            VectorMask<Double> up = v.lt(desired);
+            DoubleVector accelerated = v.add(accelStep).min(desired);
+            DoubleVector braked = v.sub(brakeStep).max(desired);
+            DoubleVector nv = braked.blend(accelerated, up);
+
+            // never cross a red stop line
+            DoubleVector delta = nv.mul(dt);
+            VectorMask<Double> clamp = stop.and(dist.lt(delta));
+            delta = delta.blend(dist.sub(STOP_MARGIN).max(0.0), clamp);
+            nv = nv.blend(0.0, clamp);
+
+            p.add(delta).intoArray(outPos, i);
+            nv.intoArray(outSpeed, i);
+        }
+        for (; i < n; i++) stepOne(pos, speed, len, i, roadLength, red, dt, outPos, outSpeed);
+    }
+}
\ No newline at end of file
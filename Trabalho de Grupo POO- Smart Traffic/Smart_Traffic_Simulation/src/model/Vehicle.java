@@ -1,7 +1,11 @@
 package model;
 
+import util.AliasTable;
+import util.Metrics;
+import util.WaitingTally;
+import util.RandomStream;
+
 import java.util.List;
-import java.util.Random;
 
 /**
  * Vehicle with lane support (0 or 1).
@@ -19,14 +23,39 @@ public class Vehicle {
     private int routeIndex = 0;
     private double waitingTime = 0.0;
 
+    // trip and current-approach accounting (fed to Metrics when set)
+    private Metrics metrics;
+    private WaitingTally waitingTally;  // per-tick waiting, folded into metrics by the owner
+    private double tripTime = 0.0;      // seconds since spawn
+    private double roadTime = 0.0;      // seconds on the current road
+    private double roadWaitStart = 0.0; // waitingTime when the current road was entered
+    private double spawnTime = 0.0;     // simulated time the vehicle was added
+    private Road origin;                // road it started on
+    private Road lastRoad;              // road it left most recently (its exit road once road is null)
+    private int roadsVisited;
+
+    // sub-stepping: conflict steps are at most this long; reaction zone before the stop line
+    public static final double MAX_SUBSTEP = 0.05;
+    static final double REACTION_ZONE = 8.0;
+    private double freeBudget = 0.0; // meters that can still be covered without checking leader/light
+
     // lane: 0 or 1
     private int lane;
 
-    private static final Random RNG = new Random();
+    // contribution to the road's density/speed bins and queue count (maintained by Road)
+    int binIndex = -1;
+    double binSpeed;
+    boolean queued;
+    boolean halted;
+
+    // per-vehicle random stream (split from the owning Simulation's seed)
+    private RandomStream rng;
 
     public Vehicle(String id, Road startRoad, double startPos, int lane, List<Road> route) {
         this.id = id;
         this.road = startRoad;
+        this.origin = startRoad;
+        this.roadsVisited = startRoad != null ? 1 : 0;
         this.position = startPos;
         this.lane = lane;
         this.route = route;
@@ -41,13 +70,147 @@ public class Vehicle {
     public int getLane() { return lane; }
     public void setLane(int lane) { this.lane = lane; }
 
+    public List<Road> getRoute() { return route; }
+    public int getRouteIndex() { return routeIndex; }
+
+    /**
+     * Restore dynamic state saved in a checkpoint (position and lane come from the constructor).
+     */
+    public void restoreState(double speed, double waitingTime, int routeIndex) {
+        this.speed = speed;
+        this.waitingTime = waitingTime;
+        this.routeIndex = routeIndex;
+    }
+
+    /**
+     * Assign the random stream used for turn choices. Simulation.addVehicle does this automatically.
+     */
+    public void setRandom(RandomStream rng) { this.rng = rng; }
+    public RandomStream getRandom() { return rng; }
+
+    /**
+     * Report waiting increments and approach crossings to metrics. Simulation.addVehicle does this automatically.
+     */
+    public void setMetrics(Metrics metrics) { this.metrics = metrics; }
+
+    /**
+     * Accumulate waiting increments in tally instead of calling metrics on every one; whoever sets it
+     * folds the tally into metrics (Simulation does, once per tick).
+     */
+    public void setWaitingTally(WaitingTally tally) { this.waitingTally = tally; }
+
+    public double getTripTime() { return tripTime; }
+    public double getSpawnTime() { return spawnTime; }
+    public void setSpawnTime(double spawnTime) { this.spawnTime = spawnTime; }
+    public Road getOrigin() { return origin; }
+    public Road getLastRoad() { return lastRoad; }
+    public int getRoadsVisited() { return roadsVisited; }
+    public double getRoadTime() { return roadTime; }
+    public double getRoadWaitStart() { return roadWaitStart; }
+
+    /**
+     * Restore trip accounting saved in a checkpoint.
+     */
+    public void restoreTrip(double tripTime, double roadTime, double roadWaitStart) {
+        this.tripTime = tripTime;
+        this.roadTime = roadTime;
+        this.roadWaitStart = roadWaitStart;
+    }
+
+    /**
+     * Restore where the trip started and how far it got (saved in a checkpoint).
+     */
+    public void restoreOrigin(double spawnTime, Road origin, Road lastRoad, int roadsVisited) {
+        this.spawnTime = spawnTime;
+        this.origin = origin;
+        this.lastRoad = lastRoad;
+        this.roadsVisited = roadsVisited;
+    }
+
+    // time spent on the road being left counts for that road
+    private void travelled(double dt) {
+        tripTime += dt;
+        roadTime += dt;
+    }
+
+    private void waited(double dt) {
+        waitingTime += dt;
+        if (waitingTally != null) waitingTally.add(dt);
+        else if (metrics != null) metrics.addActiveWaiting(dt);
+    }
+
     /**
      * Update vehicle: move respecting vehicle ahead and traffic light at end of road.
      * dt in seconds.
+     *
+     * Free-flow vehicles (leader and reaction zone further than anything reachable in dt) are advanced
+     * in closed form over the whole dt; near a conflict the step is split into sub-steps of at most
+     * MAX_SUBSTEP seconds, so a larger simulation dt only loses accuracy where nothing interacts.
      */
     public void update(double dt) {
         if (road == null) return;
 
+        double reach = maxSpeed * dt; // farthest this vehicle can travel in dt
+        if (freeBudget < reach) freeBudget = freeFlowBudget();
+        if (freeBudget >= reach) {
+            advanceFree(dt);
+            travelled(dt);
+        } else {
+            int steps = (int) Math.ceil(dt / MAX_SUBSTEP - 1e-9);
+            double h = dt / steps;
+            for (int i = 0; i < steps && road != null; i++) step(h);
+            return;
+        }
+
+        // handle end of road / move to next
+        if (position >= road.getLength() - 0.01) {
+            advanceToNextRoad();
+        } else {
+            road.updateBin(this);
+        }
+
+        if (speed < 0.1) waited(dt);
+    }
+
+    /**
+     * Meters this vehicle can travel before it may have to react: the leader's gap minus the safe
+     * distance at max speed (the leader never moves backwards, so the gap shrinks at most by our own
+     * travel) and the distance to the light's reaction zone. Negative when already in a conflict.
+     */
+    private double freeFlowBudget() {
+        double budget = Double.POSITIVE_INFINITY;
+        Vehicle ahead = road.vehicleAhead(this);
+        if (ahead != null) {
+            budget = ahead.getPosition() - position - ahead.getLength() - (2.0 + maxSpeed * 1.0);
+        }
+        if (road.getSignal() != null) {
+            budget = Math.min(budget, road.getLength() - REACTION_ZONE - position);
+        }
+        return budget;
+    }
+
+    /**
+     * Exact constant-acceleration motion up to maxSpeed, then cruise, over dt.
+     */
+    private void advanceFree(double dt) {
+        double accel = 4.0;
+        double toMax = (maxSpeed - speed) / accel; // time to reach max speed
+        double delta;
+        if (toMax >= dt) {
+            delta = speed * dt + 0.5 * accel * dt * dt;
+            speed += accel * dt;
+        } else {
+            delta = speed * toMax + 0.5 * accel * toMax * toMax + maxSpeed * (dt - toMax);
+            speed = maxSpeed;
+        }
+        position += delta;
+        freeBudget -= delta;
+    }
+
+    /**
+     * One conflict step of the car-following model.
+     */
+    private void step(double dt) {
         // desired speed
         double desiredSpeed = maxSpeed;
 
@@ -63,11 +226,10 @@ public class Vehicle {
         }
 
         // check traffic light at end of road (if near) - inbound lanes should obey the intersection light
-        Intersection next = road.getTo();
         double distanceToEnd = road.getLength() - position;
         boolean shouldStopForLight = false;
-        if (next != null && distanceToEnd < 8.0) { // reaction zone
-            TrafficLight light = next.getLightForRoad(road);
+        if (distanceToEnd < REACTION_ZONE) { // reaction zone
+            TrafficLight light = road.getSignal();
             if (light != null && !light.allowsPassage()) {
                 // need to stop before intersection
                 desiredSpeed = 0;
@@ -93,20 +255,48 @@ public class Vehicle {
         }
 
         position += delta;
+        travelled(dt);
 
         // handle end of road / move to next
         if (position >= road.getLength() - 0.01) {
             advanceToNextRoad();
+        } else {
+            road.updateBin(this);
         }
 
-        if (speed < 0.1) {
-            waitingTime += dt;
-        }
+        if (speed < 0.1) waited(dt);
     }
 
-    private void advanceToNextRoad() {
+    /**
+     * Forget the free-flow budget (a vehicle was inserted ahead, or the vehicle changed road).
+     */
+    void resetFreeFlow() { freeBudget = 0.0; }
+
+    /**
+     * Apply the result of a LaneKernel step (called by Road while it holds its lock).
+     * Returns true if the vehicle reached the end of the road and must be moved on.
+     */
+    boolean applyLaneStep(double newPosition, double newSpeed, double dt) {
+        position = newPosition;
+        speed = newSpeed;
+        freeBudget = 0.0;
+        travelled(dt);
+        if (speed < 0.1) waited(dt);
+        if (position >= road.getLength() - 0.01) return true;
+        road.updateBin(this);
+        return false;
+    }
+
+    void advanceToNextRoad() {
+        freeBudget = 0.0;
         Road old = road;
         old.removeVehicle(this);
+        if (metrics != null && old.getSignal() != null) {
+            metrics.recordApproach(old, waitingTime - roadWaitStart, roadTime);
+        }
+        roadTime = 0.0;
+        roadWaitStart = waitingTime;
+        lastRoad = old;
 
         // If a precomputed route exists, follow it
         Road nextRoad = null;
@@ -123,16 +313,20 @@ public class Vehicle {
                 speed = 0;
                 return;
             }
-            List<Road> opts = inter.getOutgoingOptions(old);
-            if (opts == null || opts.isEmpty()) {
+            CompiledNetwork net = old.getNetwork();
+            int count = net != null ? net.getTurnCount(old.getIndex()) : inter.getOutgoingOptions(old).size();
+            if (count == 0) {
                 // nothing to go to -> leave
                 road = null;
                 position = 0;
                 speed = 0;
                 return;
             }
-            // choose randomly among options (could be weighted later)
-            nextRoad = opts.get(RNG.nextInt(opts.size()));
+            // choose among options: turning ratios (alias table) if configured, else uniformly
+            if (rng == null) rng = new RandomStream(id.hashCode()); // vehicle not owned by a Simulation
+            AliasTable turns = net != null ? net.getTurnTable(old.getIndex()) : null;
+            int k = turns != null ? turns.sample(rng) : rng.nextInt(count);
+            nextRoad = net != null ? net.getTurn(old.getIndex(), k) : inter.getOutgoingOptions(old).get(k);
         }
 
         if (nextRoad == null) {
@@ -142,14 +336,16 @@ public class Vehicle {
         } else {
             // when entering a new road, select proper lane based on direction
             this.road = nextRoad;
-            // heurística: se o road id contém "_in" então lane 0 é inbound; se contém "_out" então lane 1 é outbound
-            if (nextRoad.getId().endsWith("_in")) this.lane = 0;
-            else if (nextRoad.getId().endsWith("_out")) this.lane = 1;
+            // inbound roads use lane 0, outbound lane 1 (role compiled once per road, see RoadRole)
+            RoadRole role = nextRoad.getRole();
+            if (role == RoadRole.INBOUND) this.lane = 0;
+            else if (role == RoadRole.OUTBOUND) this.lane = 1;
             else {
                 // fallback: keep previous lane or use lane 0
                 this.lane = Math.max(0, Math.min(1, this.lane));
             }
             this.position = 0.1; // small offset into new road
+            roadsVisited++;
             road.addVehicle(this);
         }
     }
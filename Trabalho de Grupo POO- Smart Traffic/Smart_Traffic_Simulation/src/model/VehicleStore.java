@@ -0,0 +1,175 @@
+package model;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
+
+import static java.lang.foreign.MemoryLayout.PathElement.groupElement;
+
+/**
+ * Fixed-capacity vehicle records in off-heap memory (Foreign Function & Memory API).
+ *
+ * One record per slot with the layout below; nothing per vehicle lives on the Java heap, so heap
+ * size and GC work do not grow with the number of vehicles. Each (road, lane) is a FIFO linked through
+ * the records (head = leader closest to the stop line, follower = next vehicle behind), which holds
+ * because vehicles never overtake. Free slots are kept in a stack.
+ *
+ * The memory belongs to a shared Arena and is released by close(). Not thread-safe: one engine
+ * thread reads and writes the store.
+ */
+public final class VehicleStore implements AutoCloseable {
+    static final StructLayout RECORD = MemoryLayout.structLayout(
+            ValueLayout.JAVA_LONG.withName("id"),
+            ValueLayout.JAVA_DOUBLE.withName("position"),
+            ValueLayout.JAVA_DOUBLE.withName("speed"),
+            ValueLayout.JAVA_DOUBLE.withName("waiting"),
+            ValueLayout.JAVA_INT.withName("road"),
+            ValueLayout.JAVA_INT.withName("lane"),
+            ValueLayout.JAVA_INT.withName("route"),        // route id, -1 = dynamic turns
+            ValueLayout.JAVA_INT.withName("routeCursor"),
+            ValueLayout.JAVA_INT.withName("follower"),     // next slot behind in the lane, -1 = none
+            ValueLayout.JAVA_INT.withName("flags"));
+
+    private static final long SIZE = RECORD.byteSize();
+    private static final long ID = RECORD.byteOffset(groupElement("id"));
+    private static final long POSITION = RECORD.byteOffset(groupElement("position"));
+    private static final long SPEED = RECORD.byteOffset(groupElement("speed"));
+    private static final long WAITING = RECORD.byteOffset(groupElement("waiting"));
+    private static final long ROAD = RECORD.byteOffset(groupElement("road"));
+    private static final long LANE = RECORD.byteOffset(groupElement("lane"));
+    private static final long ROUTE = RECORD.byteOffset(groupElement("route"));
+    private static final long ROUTE_CURSOR = RECORD.byteOffset(groupElement("routeCursor"));
+    private static final long FOLLOWER = RECORD.byteOffset(groupElement("follower"));
+    private static final long FLAGS = RECORD.byteOffset(groupElement("flags"));
+
+    // flags
+    static final int ALIVE = 1;
+    static final int QUEUED = 2;
+    static final int HALTED = 4;
+
+    private final Arena arena;
+    private final MemorySegment records;
+    private final int capacity;
+    private final int[] freeSlots;
+    private int freeCount;
+
+    // lane FIFOs: index road * 2 + lane
+    private int[] laneHead = new int[0];
+    private int[] laneTail = new int[0];
+    private int[] laneSize = new int[0];
+
+    public VehicleStore(int capacity) {
+        this.capacity = capacity;
+        this.arena = Arena.ofShared();
+        this.records = arena.allocate(SIZE * capacity, RECORD.byteAlignment());
+        this.freeSlots = new int[capacity];
+        for (int i = 0; i < capacity; i++) freeSlots[i] = capacity - 1 - i; // slot 0 handed out first
+        this.freeCount = capacity;
+    }
+
+    public int getCapacity() { return capacity; }
+    public int getActiveCount() { return capacity - freeCount; }
+
+    /** bytes of off-heap memory held by the records */
+    public long getByteSize() { return records.byteSize(); }
+
+    // ---------- slots ----------
+
+    /**
+     * Take a free slot and initialise its record (not yet linked into a lane); -1 if full.
+     */
+    int allocate(long id, int road, int lane, double position, int route) {
+        if (freeCount == 0) return -1;
+        int s = freeSlots[--freeCount];
+        long base = s * SIZE;
+        records.set(ValueLayout.JAVA_LONG, base + ID, id);
+        records.set(ValueLayout.JAVA_DOUBLE, base + POSITION, position);
+        records.set(ValueLayout.JAVA_DOUBLE, base + SPEED, 0.0);
+        records.set(ValueLayout.JAVA_DOUBLE, base + WAITING, 0.0);
+        records.set(ValueLayout.JAVA_INT, base + ROAD, road);
+        records.set(ValueLayout.JAVA_INT, base + LANE, lane);
+        records.set(ValueLayout.JAVA_INT, base + ROUTE, route);
+        records.set(ValueLayout.JAVA_INT, base + ROUTE_CURSOR, 0);
+        records.set(ValueLayout.JAVA_INT, base + FOLLOWER, -1);
+        records.set(ValueLayout.JAVA_INT, base + FLAGS, ALIVE);
+        return s;
+    }
+
+    void free(int s) {
+        records.set(ValueLayout.JAVA_INT, s * SIZE + FLAGS, 0);
+        freeSlots[freeCount++] = s;
+    }
+
+    // ---------- lanes ----------
+
+    void ensureRoads(int roads) {
+        int n = roads * 2;
+        if (laneHead.length >= n) return;
+        int old = laneHead.length;
+        laneHead = Arrays.copyOf(laneHead, n);
+        laneTail = Arrays.copyOf(laneTail, n);
+        laneSize = Arrays.copyOf(laneSize, n);
+        Arrays.fill(laneHead, old, n, -1);
+        Arrays.fill(laneTail, old, n, -1);
+    }
+
+    int head(int road, int lane) { return laneHead[road * 2 + lane]; }
+    int tail(int road, int lane) { return laneTail[road * 2 + lane]; }
+    int laneSize(int road, int lane) { return laneSize[road * 2 + lane]; }
+
+    /**
+     * Append slot s at the back of its road/lane (it is the last vehicle to enter).
+     */
+    void pushBack(int s) {
+        int l = getRoad(s) * 2 + getLane(s);
+        setFollower(s, -1);
+        if (laneTail[l] >= 0) setFollower(laneTail[l], s);
+        else laneHead[l] = s;
+        laneTail[l] = s;
+        laneSize[l]++;
+    }
+
+    /**
+     * Remove the leader of a road/lane and return its slot (-1 if the lane is empty).
+     */
+    int popFront(int road, int lane) {
+        int l = road * 2 + lane;
+        int s = laneHead[l];
+        if (s < 0) return -1;
+        laneHead[l] = getFollower(s);
+        if (laneHead[l] < 0) laneTail[l] = -1;
+        laneSize[l]--;
+        return s;
+    }
+
+    // ---------- record fields ----------
+
+    public long getId(int s) { return records.get(ValueLayout.JAVA_LONG, s * SIZE + ID); }
+    public double getPosition(int s) { return records.get(ValueLayout.JAVA_DOUBLE, s * SIZE + POSITION); }
+    public double getSpeed(int s) { return records.get(ValueLayout.JAVA_DOUBLE, s * SIZE + SPEED); }
+    public double getWaiting(int s) { return records.get(ValueLayout.JAVA_DOUBLE, s * SIZE + WAITING); }
+    public int getRoad(int s) { return records.get(ValueLayout.JAVA_INT, s * SIZE + ROAD); }
+    public int getLane(int s) { return records.get(ValueLayout.JAVA_INT, s * SIZE + LANE); }
+    public int getRoute(int s) { return records.get(ValueLayout.JAVA_INT, s * SIZE + ROUTE); }
+    public int getRouteCursor(int s) { return records.get(ValueLayout.JAVA_INT, s * SIZE + ROUTE_CURSOR); }
+    int getFollower(int s) { return records.get(ValueLayout.JAVA_INT, s * SIZE + FOLLOWER); }
+    int getFlags(int s) { return records.get(ValueLayout.JAVA_INT, s * SIZE + FLAGS); }
+    public boolean isAlive(int s) { return (getFlags(s) & ALIVE) != 0; }
+
+    void setPosition(int s, double v) { records.set(ValueLayout.JAVA_DOUBLE, s * SIZE + POSITION, v); }
+    void setSpeed(int s, double v) { records.set(ValueLayout.JAVA_DOUBLE, s * SIZE + SPEED, v); }
+    void setWaiting(int s, double v) { records.set(ValueLayout.JAVA_DOUBLE, s * SIZE + WAITING, v); }
+    void setRoad(int s, int v) { records.set(ValueLayout.JAVA_INT, s * SIZE + ROAD, v); }
+    void setLane(int s, int v) { records.set(ValueLayout.JAVA_INT, s * SIZE + LANE, v); }
+    void setRouteCursor(int s, int v) { records.set(ValueLayout.JAVA_INT, s * SIZE + ROUTE_CURSOR, v); }
+    void setFollower(int s, int v) { records.set(ValueLayout.JAVA_INT, s * SIZE + FOLLOWER, v); }
+    void setFlags(int s, int v) { records.set(ValueLayout.JAVA_INT, s * SIZE + FLAGS, v); }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
\ No newline at end of file
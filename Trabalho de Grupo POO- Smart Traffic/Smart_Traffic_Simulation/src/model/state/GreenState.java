@@ -7,7 +7,7 @@ import model.TrafficLight;
  * Green state: stays green for duration then switches to YellowState.
  */
 public class GreenState implements TrafficLightState {
-    private final double duration;
+    private double duration;
     private double elapsed = 0.0;
 
     public GreenState(double duration) {
@@ -24,7 +24,7 @@ public class GreenState implements TrafficLightState {
         elapsed += dt;
         if (elapsed >= duration) {
             // move to yellow
-            light.changeState(new YellowState(light.getYellowDuration()));
+            light.setYellow(light.getYellowDuration());
         }
     }
 
@@ -32,4 +32,26 @@ public class GreenState implements TrafficLightState {
     public LightColor getColor() {
         return LightColor.GREEN;
     }
+
+    /**
+     * Reuse this instance for another period (TrafficLight keeps one state object per color).
+     */
+    public void setDuration(double duration) {
+        this.duration = duration;
+    }
+
+    @Override
+    public double getDuration() {
+        return duration;
+    }
+
+    @Override
+    public double getElapsed() {
+        return elapsed;
+    }
+
+    @Override
+    public void setElapsed(double elapsed) {
+        this.elapsed = elapsed;
+    }
 }
\ No newline at end of file
@@ -7,7 +7,7 @@ import model.TrafficLight;
  * Red state: stays red for duration then switches to GreenState.
  */
 public class RedState implements TrafficLightState {
-    private final double duration;
+    private double duration;
     private double elapsed = 0.0;
 
     public RedState(double duration) {
@@ -24,7 +24,7 @@ public class RedState implements TrafficLightState {
         elapsed += dt;
         if (elapsed >= duration) {
             // move to green
-            light.changeState(new GreenState(light.getGreenDuration()));
+            light.setGreen(light.getGreenDuration());
         }
     }
 
@@ -32,4 +32,26 @@ public class RedState implements TrafficLightState {
     public LightColor getColor() {
         return LightColor.RED;
     }
+
+    /**
+     * Reuse this instance for another period (TrafficLight keeps one state object per color).
+     */
+    public void setDuration(double duration) {
+        this.duration = duration;
+    }
+
+    @Override
+    public double getDuration() {
+        return duration;
+    }
+
+    @Override
+    public double getElapsed() {
+        return elapsed;
+    }
+
+    @Override
+    public void setElapsed(double elapsed) {
+        this.elapsed = elapsed;
+    }
 }
\ No newline at end of file
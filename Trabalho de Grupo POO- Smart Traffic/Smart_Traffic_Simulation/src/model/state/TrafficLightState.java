@@ -21,4 +21,19 @@ public interface TrafficLightState {
      * Public color seen by vehicles/UI.
      */
     LightColor getColor();
+
+    /**
+     * Configured duration of this state, in seconds.
+     */
+    double getDuration();
+
+    /**
+     * Seconds spent in this state so far.
+     */
+    double getElapsed();
+
+    /**
+     * Overwrite the elapsed time (used when restoring a checkpoint).
+     */
+    void setElapsed(double elapsed);
 }
\ No newline at end of file
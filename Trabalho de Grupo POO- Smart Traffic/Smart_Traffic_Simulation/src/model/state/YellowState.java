@@ -7,7 +7,7 @@ import model.TrafficLight;
  * Yellow state: stays yellow for duration then switches to RedState.
  */
 public class YellowState implements TrafficLightState {
-    private final double duration;
+    private double duration;
     private double elapsed = 0.0;
 
     public YellowState(double duration) {
@@ -24,7 +24,7 @@ public class YellowState implements TrafficLightState {
         elapsed += dt;
         if (elapsed >= duration) {
             // move to red
-            light.changeState(new RedState(light.getRedDuration()));
+            light.setRed(light.getRedDuration());
         }
     }
 
@@ -32,4 +32,26 @@ public class YellowState implements TrafficLightState {
     public LightColor getColor() {
         return LightColor.YELLOW;
     }
+
+    /**
+     * Reuse this instance for another period (TrafficLight keeps one state object per color).
+     */
+    public void setDuration(double duration) {
+        this.duration = duration;
+    }
+
+    @Override
+    public double getDuration() {
+        return duration;
+    }
+
+    @Override
+    public double getElapsed() {
+        return elapsed;
+    }
+
+    @Override
+    public void setElapsed(double elapsed) {
+        this.elapsed = elapsed;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package util;
+
+/**
+ * Walker/Vose alias table: O(n) to build, O(1) and allocation-free to sample a discrete distribution.
+ * Immutable once built, so one table can be shared by every vehicle.
+ */
+public final class AliasTable {
+    private final double[] prob;
+    private final int[] alias;
+
+    /**
+     * @param weights non-negative weights (need not sum to 1), at least one positive
+     */
+    public AliasTable(double[] weights) {
+        int n = weights.length;
+        if (n == 0) throw new IllegalArgumentException("no weights");
+        double sum = 0.0;
+        for (double w : weights) {
+            if (w < 0 || Double.isNaN(w) || Double.isInfinite(w)) throw new IllegalArgumentException("invalid weight " + w);
+            sum += w;
+        }
+        if (sum <= 0) throw new IllegalArgumentException("weights sum to zero");
+
+        prob = new double[n];
+        alias = new int[n];
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int ns = 0, nl = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / sum;
+            if (scaled[i] < 1.0) small[ns++] = i;
+            else large[nl++] = i;
+        }
+        while (ns > 0 && nl > 0) {
+            int s = small[--ns];
+            int l = large[--nl];
+            prob[s] = scaled[s];
+            alias[s] = l;
+            scaled[l] = (scaled[l] + scaled[s]) - 1.0;
+            if (scaled[l] < 1.0) small[ns++] = l;
+            else large[nl++] = l;
+        }
+        // leftovers are 1 up to rounding error
+        while (nl > 0) { int l = large[--nl]; prob[l] = 1.0; alias[l] = l; }
+        while (ns > 0) { int s = small[--ns]; prob[s] = 1.0; alias[s] = s; }
+    }
+
+    public int size() { return prob.length; }
+
+    /**
+     * Index drawn with probability weights[i] / sum(weights).
+     */
+    public int sample(RandomStream rng) {
+        int i = rng.nextInt(prob.length);
+        return rng.nextDouble() < prob[i] ? i : alias[i];
+    }
+}
\ No newline at end of file
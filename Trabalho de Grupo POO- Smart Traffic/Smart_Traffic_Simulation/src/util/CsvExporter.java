@@ -15,6 +15,7 @@ public class CsvExporter {
      * Export JSON array of snapshots to path.
      */
     public static void exportJson(List<Metrics.MetricsSnapshot> snapshots, Path path) throws IOException {
+        FlightEvents.ExportEvent ev = beginExport();
         StringBuilder sb = new StringBuilder();
         sb.append("[\n");
         for (int i = 0; i < snapshots.size(); i++) {
@@ -41,12 +42,14 @@ public class CsvExporter {
         try (BufferedWriter w = Files.newBufferedWriter(path)) {
             w.write(sb.toString());
         }
+        commitExport(ev, "json", snapshots, path);
     }
 
     /**
      * Export CSV: columns are time,avgWaiting,completed,active,<dynamic queue columns sorted>.
      */
     public static void exportCsv(List<Metrics.MetricsSnapshot> snapshots, Path path) throws IOException {
+        FlightEvents.ExportEvent ev = beginExport();
         // build set of all queue keys
         LinkedHashSet<String> allQueues = new LinkedHashSet<>();
         for (Metrics.MetricsSnapshot s : snapshots) {
@@ -76,6 +79,28 @@ public class CsvExporter {
                 w.write("\n");
             }
         }
+        commitExport(ev, "csv", snapshots, path);
+    }
+
+    /**
+     * Started export event, or null when the event is not being recorded.
+     */
+    private static FlightEvents.ExportEvent beginExport() {
+        if (!FlightEvents.EXPORT.isEnabled()) return null;
+        FlightEvents.ExportEvent ev = new FlightEvents.ExportEvent();
+        ev.begin();
+        return ev;
+    }
+
+    private static void commitExport(FlightEvents.ExportEvent ev, String format, List<Metrics.MetricsSnapshot> snapshots, Path path) {
+        if (ev == null) return;
+        ev.end();
+        if (ev.shouldCommit()) {
+            ev.format = format;
+            ev.path = path.toString();
+            ev.snapshots = snapshots.size();
+            ev.commit();
+        }
     }
 
     private static String escape(String s) {
@@ -0,0 +1,238 @@
+package util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+/**
+ * Flow.Publisher that never blocks the publishing thread: every subscriber gets its own bounded
+ * buffer and an Overflow policy deciding what happens when it falls behind. Items are delivered on
+ * the executor, one drain task at a time per subscriber, so onNext calls to one subscriber never overlap.
+ * The default executor starts a virtual thread per drain, so a subscriber that blocks (e.g. writing
+ * to disk) holds up nobody but itself.
+ *
+ * submit costs O(subscribers) and allocates nothing but the drain task when a subscriber was idle;
+ * publishers should skip building items while hasSubscribers() is false.
+ */
+public class EventPublisher<T> implements Flow.Publisher<T>, AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * What a full subscriber buffer does with a new item.
+     */
+    public enum Overflow {
+        /** keep the buffered items, discard the new one */
+        DROP_NEWEST,
+        /** discard the oldest buffered item to make room */
+        DROP_OLDEST,
+        /** keep only the newest item (buffer of one that is overwritten), for "latest state" consumers */
+        LATEST
+    }
+
+    private final Executor executor;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    public EventPublisher() {
+        this(Thread::startVirtualThread);
+    }
+
+    public EventPublisher(Executor executor) {
+        this.executor = executor;
+    }
+
+    public boolean hasSubscribers() { return !subscriptions.isEmpty(); }
+
+    public int getSubscriberCount() { return subscriptions.size(); }
+
+    /**
+     * Subscribe with a buffer of DEFAULT_CAPACITY items that drops new items when full.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        subscribe(subscriber, DEFAULT_CAPACITY, Overflow.DROP_NEWEST);
+    }
+
+    /**
+     * Subscribe with its own buffer of capacity items (ignored for LATEST) and overflow policy.
+     * Returns the subscription, e.g. to read getDropped.
+     */
+    public Subscription subscribe(Flow.Subscriber<? super T> subscriber, int capacity, Overflow overflow) {
+        if (subscriber == null) throw new NullPointerException("subscriber");
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        Subscription s = new Subscription(subscriber, overflow == Overflow.LATEST ? 1 : capacity, overflow);
+        // add before checking closed: a close() that did not see s has set closed by the time we look
+        subscriptions.add(s);
+        subscriber.onSubscribe(s);
+        s.start();
+        if (closed) s.complete();
+        return s;
+    }
+
+    /**
+     * Offer item to every subscriber without waiting; full buffers apply their Overflow policy.
+     * Ignored once the publisher is closed.
+     */
+    public void submit(T item) {
+        if (item == null) throw new NullPointerException("item");
+        if (closed) return;
+        for (Subscription s : subscriptions) s.offer(item);
+    }
+
+    /**
+     * Deliver what is buffered, then onComplete to every subscriber. Later subscribers complete at once.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Subscription s : subscriptions) s.complete();
+    }
+
+    /**
+     * One subscriber's buffer (a ring) and demand. Guarded by itself; drained on the executor.
+     */
+    public final class Subscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final Overflow overflow;
+        private final Object[] ring;
+        private int head, size;
+        private long demand;
+        private long dropped;
+        private boolean scheduled;
+        private boolean started; // onSubscribe has returned, signals may be delivered
+        private boolean completed;
+        private boolean cancelled;
+        private Throwable error; // from an invalid request(n)
+        private final Runnable drainTask = this::drain;
+
+        private Subscription(Flow.Subscriber<? super T> subscriber, int capacity, Overflow overflow) {
+            this.subscriber = subscriber;
+            this.overflow = overflow;
+            this.ring = new Object[capacity];
+        }
+
+        /** items discarded by the overflow policy so far */
+        public synchronized long getDropped() { return dropped; }
+
+        /** items waiting in the buffer */
+        public synchronized int getBuffered() { return size; }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (cancelled) return;
+                if (n <= 0) {
+                    error = new IllegalArgumentException("request must be positive (Flow rule 3.9): " + n);
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                size = 0;
+                Arrays.fill(ring, null);
+            }
+            subscriptions.remove(this);
+        }
+
+        void offer(T item) {
+            synchronized (this) {
+                if (cancelled || completed) return;
+                if (size == ring.length) {
+                    dropped++;
+                    if (overflow == Overflow.DROP_NEWEST) return;
+                    ring[head] = null; // DROP_OLDEST and LATEST
+                    head = (head + 1) % ring.length;
+                    size--;
+                }
+                ring[(head + size) % ring.length] = item;
+                size++;
+            }
+            signal();
+        }
+
+        void start() {
+            synchronized (this) {
+                started = true;
+            }
+            signal();
+        }
+
+        void complete() {
+            synchronized (this) {
+                completed = true;
+            }
+            signal();
+        }
+
+        /**
+         * Schedule a drain unless one is running or there is nothing it could do.
+         */
+        void signal() {
+            synchronized (this) {
+                if (scheduled || cancelled || !started) return;
+                boolean deliverable = size > 0 && demand > 0;
+                boolean finishing = size == 0 && completed;
+                if (!deliverable && !finishing && error == null) return;
+                scheduled = true;
+            }
+            executor.execute(drainTask);
+        }
+
+        /**
+         * Drain task: deliver while there is demand, then finish (onComplete/onError) if due.
+         */
+        @SuppressWarnings("unchecked")
+        private void drain() {
+            while (true) {
+                T item = null;
+                Throwable failed = null;
+                boolean done = false;
+                synchronized (this) {
+                    if (cancelled) {
+                        scheduled = false;
+                        return;
+                    }
+                    if (error != null) {
+                        failed = error;
+                    } else if (size == 0 && completed) {
+                        done = true;
+                    } else if (size == 0 || demand == 0) {
+                        scheduled = false;
+                        return;
+                    } else {
+                        item = (T) ring[head];
+                        ring[head] = null;
+                        head = (head + 1) % ring.length;
+                        size--;
+                        if (demand != Long.MAX_VALUE) demand--;
+                    }
+                    if (failed != null || done) {
+                        cancelled = true;
+                        scheduled = false;
+                    }
+                }
+                if (failed != null || done) {
+                    subscriptions.remove(this);
+                    if (failed != null) subscriber.onError(failed);
+                    else subscriber.onComplete();
+                    return;
+                }
+                try {
+                    subscriber.onNext(item);
+                } catch (Throwable t) {
+                    cancel();
+                    subscriber.onError(t);
+                    return;
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
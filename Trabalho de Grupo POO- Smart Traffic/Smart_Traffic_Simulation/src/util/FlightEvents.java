@@ -0,0 +1,147 @@
+package util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Custom Java Flight Recorder events for the simulation (view them in JMC under "Smart Traffic").
+ *
+ * Callers check the cached EventType below before creating an event, so when recording is off
+ * nothing is allocated, filled in or timed (escape analysis cannot be relied on to remove the object).
+ */
+public final class FlightEvents {
+
+    private FlightEvents() { }
+
+    // registered once; isEnabled() on these reads a flag and allocates nothing
+    public static final EventType TICK = EventType.getEventType(TickEvent.class);
+    public static final EventType SIGNAL_CHANGE = EventType.getEventType(SignalChangeEvent.class);
+    public static final EventType PREEMPTION = EventType.getEventType(PreemptionEvent.class);
+    public static final EventType VEHICLE_SPAWN = EventType.getEventType(VehicleSpawnEvent.class);
+    public static final EventType VEHICLE_COMPLETE = EventType.getEventType(VehicleCompleteEvent.class);
+    public static final EventType EXPORT = EventType.getEventType(ExportEvent.class);
+
+    @Name("smarttraffic.Tick")
+    @Label("Simulation Tick")
+    @Category({"Smart Traffic", "Simulation"})
+    @Description("One fixed-step Simulation.tick, with the time spent in each phase")
+    @StackTrace(false)
+    public static class TickEvent extends Event {
+        @Label("Sim Time")
+        public double simTime;
+
+        @Label("Step (s)")
+        public double dt;
+
+        @Label("Active Vehicles")
+        public int activeVehicles;
+
+        @Label("Intersections")
+        @Timespan(Timespan.NANOSECONDS)
+        public long intersectionsNanos;
+
+        @Label("Strategy")
+        @Timespan(Timespan.NANOSECONDS)
+        public long strategyNanos;
+
+        @Label("Vehicles")
+        @Timespan(Timespan.NANOSECONDS)
+        public long vehiclesNanos;
+
+        @Label("Spawn")
+        @Timespan(Timespan.NANOSECONDS)
+        public long spawnNanos;
+
+        @Label("Metrics")
+        @Timespan(Timespan.NANOSECONDS)
+        public long metricsNanos;
+    }
+
+    @Name("smarttraffic.SignalChange")
+    @Label("Signal Change")
+    @Category({"Smart Traffic", "Signals"})
+    @Description("TrafficLight.changeState transition")
+    @StackTrace(false)
+    public static class SignalChangeEvent extends Event {
+        @Label("Intersection")
+        public String intersection;
+
+        @Label("Road")
+        public String road;
+
+        @Label("From")
+        public String from;
+
+        @Label("To")
+        public String to;
+
+        @Label("State")
+        public String state;
+    }
+
+    @Name("smarttraffic.Preemption")
+    @Label("Priority Preemption")
+    @Category({"Smart Traffic", "Signals"})
+    @Description("Intersection.requestPriority forcing one approach to green")
+    public static class PreemptionEvent extends Event {
+        @Label("Intersection")
+        public String intersection;
+
+        @Label("Road")
+        public String road;
+
+        @Label("Duration (s)")
+        public double duration;
+    }
+
+    @Name("smarttraffic.VehicleSpawn")
+    @Label("Vehicle Spawn")
+    @Category({"Smart Traffic", "Vehicles"})
+    @StackTrace(false)
+    public static class VehicleSpawnEvent extends Event {
+        @Label("Vehicle")
+        public String vehicle;
+
+        @Label("Road")
+        public String road;
+
+        @Label("Sim Time")
+        public double simTime;
+    }
+
+    @Name("smarttraffic.VehicleComplete")
+    @Label("Vehicle Complete")
+    @Category({"Smart Traffic", "Vehicles"})
+    @StackTrace(false)
+    public static class VehicleCompleteEvent extends Event {
+        @Label("Vehicle")
+        public String vehicle;
+
+        @Label("Waiting Time (s)")
+        public double waitingTime;
+
+        @Label("Sim Time")
+        public double simTime;
+    }
+
+    @Name("smarttraffic.Export")
+    @Label("Metrics Export")
+    @Category({"Smart Traffic", "Export"})
+    @Description("CsvExporter writing snapshots to disk")
+    public static class ExportEvent extends Event {
+        @Label("Format")
+        public String format;
+
+        @Label("Path")
+        public String path;
+
+        @Label("Snapshots")
+        public int snapshots;
+    }
+}
\ No newline at end of file
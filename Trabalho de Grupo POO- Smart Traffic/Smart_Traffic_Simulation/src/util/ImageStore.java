@@ -3,30 +3,132 @@ package util;
 import javafx.scene.image.Image;
 
 import java.io.InputStream;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * Simple image cache/load helper. Loads from /assets/ in resources.
+ * Thread-safe image cache. Loads from /resources/ (where the bundled images live).
+ *
+ * Decoded images are kept in an LRU map bounded by an estimated byte budget (width * height * 4).
+ * preload(...) decodes on a background thread at startup so the first draw does not stall;
+ * load(...) waits for a pending preload of the same key instead of decoding it twice.
  */
 public class ImageStore {
-    private static final Map<String, Image> cache = new HashMap<>();
+    private static final String BASE = "/resources/";
+    private static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+    private static long budgetBytes = DEFAULT_BUDGET;
+    private static long usedBytes = 0;
+    // access-ordered: iteration starts at the least recently used image
+    private static final LinkedHashMap<String, Image> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private static final Map<String, CompletableFuture<Image>> pending = new ConcurrentHashMap<>();
+
+    private static final ExecutorService decoder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "image-decoder");
+        t.setDaemon(true);
+        return t;
+    });
 
     public static Image load(String name) {
+        return load(name, 0, 0);
+    }
+
+    /**
+     * Load an image, scaled during decoding when width/height are > 0 (0 keeps the original size).
+     */
+    public static Image load(String name, double width, double height) {
         if (name == null) return null;
-        return cache.computeIfAbsent(name, k -> {
-            try {
-                String path = "/assets/" + k;
-                InputStream is = ImageStore.class.getResourceAsStream(path);
-                if (is == null) {
-                    System.err.println("Image not found: " + path);
-                    return null;
-                }
-                return new Image(is);
-            } catch (Exception e) {
-                e.printStackTrace();
+        String key = key(name, width, height);
+        synchronized (ImageStore.class) {
+            Image img = cache.get(key);
+            if (img != null) return img;
+        }
+        CompletableFuture<Image> f = pending.get(key);
+        if (f != null) return f.join();
+        Image img = decode(name, width, height);
+        put(key, img);
+        return img;
+    }
+
+    /**
+     * Decode images in the background; the future completes when all of them are cached.
+     */
+    public static CompletableFuture<Void> preload(String... names) {
+        CompletableFuture<?>[] all = new CompletableFuture<?>[names.length];
+        for (int i = 0; i < names.length; i++) all[i] = loadAsync(names[i], 0, 0);
+        return CompletableFuture.allOf(all);
+    }
+
+    /**
+     * Asynchronous load on the decoder thread (same caching rules as load).
+     */
+    public static CompletableFuture<Image> loadAsync(String name, double width, double height) {
+        String key = key(name, width, height);
+        synchronized (ImageStore.class) {
+            Image img = cache.get(key);
+            if (img != null) return CompletableFuture.completedFuture(img);
+        }
+        return pending.computeIfAbsent(key, k -> CompletableFuture.supplyAsync(() -> {
+            Image img = decode(name, width, height);
+            put(k, img);
+            pending.remove(k);
+            return img;
+        }, decoder));
+    }
+
+    /**
+     * Change the cache budget (bytes); evicts immediately if the cache is over it.
+     */
+    public static synchronized void setBudgetBytes(long bytes) {
+        budgetBytes = bytes;
+        evict(null);
+    }
+
+    public static synchronized long getUsedBytes() { return usedBytes; }
+
+    private static String key(String name, double width, double height) {
+        return (width > 0 || height > 0) ? name + "@" + width + "x" + height : name;
+    }
+
+    private static Image decode(String name, double width, double height) {
+        String path = BASE + name;
+        try (InputStream is = ImageStore.class.getResourceAsStream(path)) {
+            if (is == null) {
+                System.err.println("Image not found: " + path);
                 return null;
             }
-        });
+            return (width > 0 || height > 0) ? new Image(is, width, height, false, true) : new Image(is);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static synchronized void put(String key, Image img) {
+        if (img == null) return;
+        Image old = cache.put(key, img);
+        if (old != null) usedBytes -= bytes(old);
+        usedBytes += bytes(img);
+        evict(key);
+    }
+
+    // drop least recently used images until under budget (never the one just inserted)
+    private static void evict(String keep) {
+        Iterator<Map.Entry<String, Image>> it = cache.entrySet().iterator();
+        while (usedBytes > budgetBytes && it.hasNext()) {
+            Map.Entry<String, Image> e = it.next();
+            if (e.getKey().equals(keep)) continue;
+            usedBytes -= bytes(e.getValue());
+            it.remove();
+        }
+    }
+
+    private static long bytes(Image img) {
+        return (long) img.getWidth() * (long) img.getHeight() * 4L;
     }
 }
\ No newline at end of file
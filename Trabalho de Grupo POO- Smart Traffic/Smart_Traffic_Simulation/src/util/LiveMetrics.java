@@ -0,0 +1,194 @@
+package util;
+
+import model.Intersection;
+import model.Road;
+
+import java.lang.invoke.VarHandle;
+import java.util.List;
+
+/**
+ * Latest simulation figures, published by the simulation thread after every tick and read by
+ * other threads (MetricsServer) without taking any lock the simulation uses.
+ *
+ * Single writer, any number of readers: a seqlock. The writer makes the sequence odd, stores plain
+ * fields and makes it even again; a reader copies the fields and retries if the sequence moved.
+ * Publishing allocates nothing unless the set of approaches changes.
+ *
+ * Tick latency goes into a log-bucket histogram: 4 buckets per power of two (about 19% wide).
+ */
+public class LiveMetrics {
+    static final int SUB_BUCKETS = 4;
+    static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private volatile long sequence;
+
+    // guarded by sequence
+    private double simTime;
+    private long ticks;
+    private long wallNanos;          // System.nanoTime() of the last publish
+    private int completed;
+    private int active;
+    private double avgWaiting;
+    private String[] approachIds = new String[0];
+    private int[] queues = new int[0];
+    private final long[] latencyBuckets = new long[BUCKETS];
+    private long latencySumNanos;
+
+    // writer only: gathered before the sequence goes odd, so no lock is taken inside the write window
+    private String[] nextIds = new String[0];
+    private int[] nextQueues = new int[0];
+
+    /**
+     * Called by Simulation at the end of each tick (simulation thread only).
+     */
+    public void publish(double simTime, Metrics metrics, int active, List<Intersection> intersections, long tickNanos) {
+        // Metrics and Intersection getters are synchronized: read them all before the sequence goes
+        // odd, so readers never spin while the writer waits for a lock
+        int completed = metrics.getCompleted();
+        double avgWaiting = metrics.getLastAvgWaiting();
+        int approaches = 0;
+        for (int i = 0; i < intersections.size(); i++) approaches += intersections.get(i).getApproachCount();
+        if (nextQueues.length != approaches) {
+            nextQueues = new int[approaches];
+            nextIds = new String[approaches];
+        }
+        int k = 0;
+        for (int i = 0; i < intersections.size(); i++) {
+            Intersection in = intersections.get(i);
+            for (int a = 0, n = in.getApproachCount(); a < n && k < approaches; a++) {
+                Road r = in.getApproach(a);
+                nextIds[k] = r.getId();
+                nextQueues[k++] = in.countWaitingVehicles(r);
+            }
+        }
+        publish(simTime, completed, active, avgWaiting, nextIds, nextQueues, tickNanos);
+    }
+
+    /**
+     * Same as publish, from values copied at the end of a tick (pipelined ticks publish from a
+     * second thread, which still must be the only writer). Both arrays are copied.
+     */
+    public void publish(double simTime, int completed, int active, double avgWaiting,
+                        String[] approachIds, int[] queues, long tickNanos) {
+        long s = sequence;
+        sequence = s + 1;
+        VarHandle.storeStoreFence();
+
+        this.simTime = simTime;
+        this.ticks++;
+        this.wallNanos = System.nanoTime();
+        this.completed = completed;
+        this.active = active;
+        this.avgWaiting = avgWaiting;
+        if (this.queues.length != queues.length) {
+            this.queues = new int[queues.length];
+            this.approachIds = new String[queues.length];
+        }
+        System.arraycopy(queues, 0, this.queues, 0, queues.length);
+        System.arraycopy(approachIds, 0, this.approachIds, 0, queues.length);
+        latencyBuckets[bucketOf(tickNanos)]++;
+        latencySumNanos += tickNanos;
+
+        sequence = s + 2;
+    }
+
+    /**
+     * Consistent copy of the latest publish (spins while a publish is in progress).
+     */
+    public Snapshot read() {
+        Snapshot out = new Snapshot();
+        long[] buckets = new long[BUCKETS];
+        while (true) {
+            long s = sequence;
+            if ((s & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            out.simTime = simTime;
+            out.ticks = ticks;
+            out.wallNanos = wallNanos;
+            out.completed = completed;
+            out.active = active;
+            out.avgWaiting = avgWaiting;
+            String[] ids = approachIds;
+            int[] q = queues;
+            int n = Math.min(ids.length, q.length);
+            out.approachIds = new String[n];
+            out.queues = new int[n];
+            System.arraycopy(ids, 0, out.approachIds, 0, n);
+            System.arraycopy(q, 0, out.queues, 0, n);
+            System.arraycopy(latencyBuckets, 0, buckets, 0, BUCKETS);
+            out.latencySumNanos = latencySumNanos;
+            VarHandle.loadLoadFence();
+            if (sequence == s) break;
+        }
+        out.latencyBuckets = buckets;
+        return out;
+    }
+
+    // ---------- log buckets ----------
+
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) Math.max(0, nanos);
+        int msb = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (msb - 2)) & (SUB_BUCKETS - 1);
+        return msb * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Upper bound (exclusive) in nanoseconds of a bucket.
+     */
+    static double bucketUpper(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket + 1;
+        int msb = bucket / SUB_BUCKETS;
+        int sub = bucket % SUB_BUCKETS;
+        return Math.scalb((double) (SUB_BUCKETS + sub + 1), msb - 2);
+    }
+
+    /**
+     * Copy of the published values, owned by the reader.
+     */
+    public static class Snapshot {
+        private double simTime;
+        private long ticks;
+        private long wallNanos;
+        private int completed;
+        private int active;
+        private double avgWaiting;
+        private String[] approachIds;
+        private int[] queues;
+        private long[] latencyBuckets;
+        private long latencySumNanos;
+
+        public double getSimTime() { return simTime; }
+        public long getTicks() { return ticks; }
+        public long getWallNanos() { return wallNanos; }
+        public int getCompleted() { return completed; }
+        public int getActive() { return active; }
+        public double getAvgWaiting() { return avgWaiting; }
+        public int getApproachCount() { return queues.length; }
+        public String getApproachId(int i) { return approachIds[i]; }
+        public int getQueue(int i) { return queues[i]; }
+        public long getLatencyCount() {
+            long n = 0;
+            for (long c : latencyBuckets) n += c;
+            return n;
+        }
+        public double getLatencySumSeconds() { return latencySumNanos / 1e9; }
+
+        /**
+         * Tick latency quantile in seconds (upper bound of the bucket holding it), 0 if nothing recorded.
+         */
+        public double getLatencyQuantile(double q) {
+            long total = getLatencyCount();
+            if (total == 0) return 0.0;
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += latencyBuckets[b];
+                if (seen >= rank && latencyBuckets[b] > 0) return bucketUpper(b) / 1e9;
+            }
+            return bucketUpper(BUCKETS - 1) / 1e9;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,127 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable log-linear histogram of non-negative values (HDR histogram layout).
+ *
+ * Values are counted in multiples of unit; below 2^SUB_BITS units every value has its own bucket,
+ * above that each power of two is split into 2^SUB_BITS linear sub-buckets. So a quantile is exact to
+ * one unit or 1/2^SUB_BITS (about 3%) of its value, whichever is larger, in O(buckets) memory no matter
+ * how many values are recorded. Two histograms with the same unit merge by adding their counts.
+ */
+public class LogHistogram {
+    public static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int SUB_MASK = SUB_COUNT - 1;
+
+    private final double unit;
+    private long[] counts = new long[2 * SUB_COUNT]; // grown when a larger value arrives
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = 0.0;
+
+    public LogHistogram(double unit) {
+        if (!(unit > 0)) throw new IllegalArgumentException("unit must be positive");
+        this.unit = unit;
+    }
+
+    public double getUnit() { return unit; }
+
+    /**
+     * Count one value (negative values count as 0).
+     */
+    public void record(double value) {
+        if (!(value > 0)) value = 0.0;
+        int b = bucketOf((long) (value / unit));
+        if (b >= counts.length) counts = Arrays.copyOf(counts, Math.max(b + 1, counts.length * 2));
+        counts[b]++;
+        count++;
+        sum += value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    /**
+     * Add all values of another histogram with the same unit.
+     */
+    public void merge(LogHistogram other) {
+        if (other.unit != unit) throw new IllegalArgumentException("units differ: " + unit + " vs " + other.unit);
+        if (other.count == 0) return;
+        if (other.counts.length > counts.length) counts = Arrays.copyOf(counts, other.counts.length);
+        for (int b = 0; b < other.counts.length; b++) counts[b] += other.counts[b];
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public LogHistogram copy() {
+        LogHistogram h = new LogHistogram(unit);
+        h.merge(this);
+        return h;
+    }
+
+    public long getCount() { return count; }
+    public double getSum() { return sum; }
+    public double getMean() { return count == 0 ? 0.0 : sum / count; }
+    public double getMin() { return count == 0 ? 0.0 : min; }
+    public double getMax() { return max; }
+
+    /**
+     * Value at quantile q (0..1): middle of the bucket holding that rank, clamped to [min, max].
+     * 0 if nothing was recorded.
+     */
+    public double getQuantile(double q) {
+        if (count == 0) return 0.0;
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int b = 0; b < counts.length; b++) {
+            seen += counts[b];
+            if (seen >= rank) {
+                double mid = (lowerBound(b) + bucketWidth(b) / 2.0) * unit;
+                return Math.max(min, Math.min(max, mid));
+            }
+        }
+        return max;
+    }
+
+    // ---------- buckets ----------
+
+    static int bucketOf(long units) {
+        if (units < SUB_COUNT) return (int) units;
+        int shift = 63 - Long.numberOfLeadingZeros(units) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((units >>> shift) & SUB_MASK);
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_COUNT) return bucket;
+        int shift = (bucket >> SUB_BITS) - 1;
+        return (long) (SUB_COUNT + (bucket & SUB_MASK)) << shift;
+    }
+
+    static long bucketWidth(int bucket) {
+        return bucket < SUB_COUNT ? 1 : 1L << ((bucket >> SUB_BITS) - 1);
+    }
+
+    // ---------- checkpoint support ----------
+
+    /** number of bucket slots (some may be empty) */
+    public int getBucketSlots() { return counts.length; }
+
+    public long getBucket(int i) { return counts[i]; }
+
+    /**
+     * Rebuild a histogram from saved buckets and totals.
+     */
+    public static LogHistogram restore(double unit, long[] buckets, double sum, double min, double max) {
+        LogHistogram h = new LogHistogram(unit);
+        h.counts = Arrays.copyOf(buckets, Math.max(buckets.length, h.counts.length));
+        for (long c : buckets) h.count += c;
+        h.sum = sum;
+        h.min = h.count == 0 ? Double.POSITIVE_INFINITY : min;
+        h.max = max;
+        return h;
+    }
+}
\ No newline at end of file
@@ -1,71 +1,288 @@
 package util;
 
 import model.Intersection;
-import model.Vehicle;
+import model.Road;
 
 import java.util.*;
 
 /**
  * Metrics collects snapshots of simulation metrics for later export/plot.
  * Each sample records timestamp, average waiting time, completed vehicles, active count and queue lengths per road.
+ * Samples are kept in primitive arrays; MetricsSnapshot objects are only built by getSnapshots.
+ *
+ * The waiting time of active vehicles is a running sum fed by the vehicles themselves, so a sample
+ * does not walk the vehicles. Finished trips and approach crossings go into LogHistograms (waiting
+ * and travel time, network-wide and per approach) for p50/p95/p99 that the mean hides.
  */
 public class Metrics {
     private int completed = 0;
-    private final List<MetricsSnapshot> snapshots = new ArrayList<>();
+
+    // snapshot history stored as primitive columns (one row per sample), grown by doubling
+    private int rows = 0;
+    private double[] time = new double[0];
+    private double[] rowAvgWaiting = new double[0];
+    private int[] rowCompleted = new int[0];
+    private int[] rowActive = new int[0];
+    private int[] queueStart = new int[0];   // first entry of the row in queueValues
+    private String[][] queueKeys = new String[0][]; // road ids of the row (shared while the layout is unchanged)
+    private int[] queueValues = new int[0];
+    private int queueCount = 0;
+    private String[] layout = new String[0]; // approach ids of the current layout
+
+    // running aggregates (kept even when snapshots are off, e.g. headless sweeps)
+    private boolean recordSnapshots = true;
+    private long samples = 0;
+    private double avgWaitingSum = 0.0;
+    private double lastAvgWaiting = 0.0;
+    private double activeWaiting = 0.0; // summed waiting time of the simulation's vehicles (incl. off-heap)
+
+    // distributions, in seconds with HISTOGRAM_UNIT resolution
+    public static final double HISTOGRAM_UNIT = 0.01;
+    private final LogHistogram tripWaiting = new LogHistogram(HISTOGRAM_UNIT);
+    private final LogHistogram tripTravel = new LogHistogram(HISTOGRAM_UNIT);
+    private LogHistogram[] approachWaiting = new LogHistogram[0]; // by road index, null until used
+    private LogHistogram[] approachTravel = new LogHistogram[0];
+
+    // optional memory-mapped ring every sample is also written to
+    private TelemetryRing telemetry;
 
     public synchronized void countVehicleCompleted() { completed++; }
 
     /**
-     * Sample the current state. intersections used to get queue lengths.
+     * n vehicles left the world at once (e.g. an off-heap step); their trips are not recorded.
+     */
+    public synchronized void addCompleted(long n) { completed = Math.toIntExact(completed + n); }
+
+    // ---------- incremental aggregates (fed by Simulation and Vehicle) ----------
+
+    /**
+     * A vehicle of the simulation waited dt more seconds (or joined with dt already waited).
+     */
+    public synchronized void addActiveWaiting(double dt) { activeWaiting += dt; }
+
+    /**
+     * A vehicle left the simulation's vehicle list: its waiting no longer counts in the average,
+     * and its trip goes into the trip histograms.
+     */
+    public synchronized void recordTrip(double waitingTime, double travelTime) {
+        activeWaiting -= waitingTime;
+        tripWaiting.record(waitingTime);
+        tripTravel.record(travelTime);
+    }
+
+    /**
+     * A vehicle left an approach (a road with a light) after waiting and travelling there.
      */
-    public synchronized void sample(double simTime, List<Vehicle> vehicles, List<Intersection> intersections) {
-        double avgWaiting = 0.0;
-        if (!vehicles.isEmpty()) {
-            double sum = 0.0;
-            for (Vehicle v : vehicles) sum += v.getWaitingTime();
-            avgWaiting = sum / vehicles.size();
+    public synchronized void recordApproach(Road approach, double waitingTime, double travelTime) {
+        int i = approach.getIndex();
+        if (i < 0) return;
+        if (i >= approachWaiting.length) {
+            int cap = Math.max(i + 1, approachWaiting.length * 2);
+            approachWaiting = Arrays.copyOf(approachWaiting, cap);
+            approachTravel = Arrays.copyOf(approachTravel, cap);
         }
-        int active = vehicles.size();
-        Map<String, Integer> queues = new LinkedHashMap<>();
-        for (Intersection in : intersections) {
-            // record each incoming road by name
-            for (Map.Entry<?, ?> e : in.getLights().entrySet()) {
-                // key is Road instance
-                Object roadObj = e.getKey();
-                try {
-                    String name = roadObj.toString();
-                    // safer: if road class has getId method
-                    String id;
-                    try {
-                        id = (String) roadObj.getClass().getMethod("getId").invoke(roadObj);
-                    } catch (Exception ex) {
-                        id = name;
-                    }
-                    // intersection.countWaitingVehicles requires casting to proper types; call reflect not used here
-                    // But Intersection has method countWaitingVehicles(Road) — we need to cast roadObj to the Road type
-                    // We'll attempt a cast
-                    int q = 0;
-                    try {
-                        q = in.countWaitingVehicles((model.Road) roadObj);
-                    } catch (ClassCastException ce) {
-                        q = 0;
-                    }
-                    queues.put(id, q);
-                } catch (Exception ex) {
-                    // fallback: ignore
-                }
+        if (approachWaiting[i] == null) {
+            approachWaiting[i] = new LogHistogram(HISTOGRAM_UNIT);
+            approachTravel[i] = new LogHistogram(HISTOGRAM_UNIT);
+        }
+        approachWaiting[i].record(waitingTime);
+        approachTravel[i].record(travelTime);
+    }
+
+    /**
+     * Sample the current state (active = Simulation.getVehicleCount(), off-heap vehicles included). intersections used to get queue lengths.
+     * O(approaches); allocation-free except when the history arrays grow (see reserve) or the approaches change.
+     */
+    public synchronized void sample(double simTime, int active, List<Intersection> intersections) {
+        double avgWaiting = active > 0 ? activeWaiting / active : 0.0;
+        aggregate(avgWaiting);
+        if (telemetry != null) telemetry.write(simTime, completed, active, avgWaiting, intersections);
+        if (!recordSnapshots) return;
+
+        int approaches = 0;
+        for (int i = 0; i < intersections.size(); i++) approaches += intersections.get(i).getApproachCount();
+        ensureCapacity(rows + 1, queueCount + approaches);
+
+        // record each incoming road by id; a new key array only when the approaches changed
+        boolean sameLayout = layout.length == approaches;
+        int k = queueCount;
+        for (int i = 0; i < intersections.size(); i++) {
+            Intersection in = intersections.get(i);
+            for (int a = 0, n = in.getApproachCount(); a < n; a++) {
+                Road r = in.getApproach(a);
+                if (sameLayout && layout[k - queueCount] != r.getId()) sameLayout = false; // same id instances
+                queueValues[k++] = in.countWaitingVehicles(r);
             }
         }
-        MetricsSnapshot snap = new MetricsSnapshot(simTime, avgWaiting, completed, active, queues);
-        snapshots.add(snap);
+        if (!sameLayout) {
+            String[] ids = new String[approaches];
+            int j = 0;
+            for (int i = 0; i < intersections.size(); i++) {
+                Intersection in = intersections.get(i);
+                for (int a = 0, n = in.getApproachCount(); a < n; a++) ids[j++] = in.getApproach(a).getId();
+            }
+            layout = ids;
+        }
+
+        time[rows] = simTime;
+        rowAvgWaiting[rows] = avgWaiting;
+        rowCompleted[rows] = completed;
+        rowActive[rows] = active;
+        queueStart[rows] = queueCount;
+        queueKeys[rows] = layout;
+        rows++;
+        queueCount = k;
+    }
+
+    /**
+     * Record a sample taken earlier by another thread (pipelined ticks): same effect as sample, but
+     * from copied values instead of the live intersections. approachIds must not be modified
+     * afterwards (rows keep a reference); queues is copied.
+     */
+    public synchronized void recordSample(double simTime, int completed, int active, double avgWaiting,
+                                          String[] approachIds, int[] queues) {
+        aggregate(avgWaiting);
+        if (telemetry != null) telemetry.write(simTime, completed, active, avgWaiting, queues);
+        if (!recordSnapshots) return;
+
+        ensureCapacity(rows + 1, queueCount + queues.length);
+        System.arraycopy(queues, 0, queueValues, queueCount, queues.length);
+        time[rows] = simTime;
+        rowAvgWaiting[rows] = avgWaiting;
+        rowCompleted[rows] = completed;
+        rowActive[rows] = active;
+        queueStart[rows] = queueCount;
+        queueKeys[rows] = approachIds;
+        rows++;
+        queueCount += queues.length;
+    }
+
+    private void aggregate(double avgWaiting) {
+        samples++;
+        avgWaitingSum += avgWaiting;
+        lastAvgWaiting = avgWaiting;
+    }
+
+    /**
+     * Also write every sample into a memory-mapped ring (null stops it). The caller closes the ring.
+     */
+    public synchronized void setTelemetry(TelemetryRing telemetry) { this.telemetry = telemetry; }
+
+    /**
+     * Reserve room for the given number of samples so recording them never reallocates.
+     */
+    public synchronized void reserve(int samples, int approachesPerSample) {
+        ensureCapacity(samples, samples * approachesPerSample);
+    }
+
+    private void ensureCapacity(int rowsNeeded, int queuesNeeded) {
+        if (rowsNeeded > time.length) {
+            int cap = Math.max(rowsNeeded, Math.max(64, time.length * 2));
+            time = Arrays.copyOf(time, cap);
+            rowAvgWaiting = Arrays.copyOf(rowAvgWaiting, cap);
+            rowCompleted = Arrays.copyOf(rowCompleted, cap);
+            rowActive = Arrays.copyOf(rowActive, cap);
+            queueStart = Arrays.copyOf(queueStart, cap);
+            queueKeys = Arrays.copyOf(queueKeys, cap);
+        }
+        if (queuesNeeded > queueValues.length) {
+            queueValues = Arrays.copyOf(queueValues, Math.max(queuesNeeded, Math.max(256, queueValues.length * 2)));
+        }
     }
 
     public synchronized int getCompleted() { return completed; }
 
+    /**
+     * Turn off per-tick snapshots (queue columns) when only the running aggregates are needed.
+     */
+    public synchronized void setRecordSnapshots(boolean recordSnapshots) { this.recordSnapshots = recordSnapshots; }
+
+    /**
+     * Mean of the sampled average waiting times over the whole run.
+     */
+    public synchronized double getMeanAvgWaiting() { return samples == 0 ? 0.0 : avgWaitingSum / samples; }
+
+    /** sum of the sampled average waiting times (getMeanAvgWaiting times getSampleCount, without rounding) */
+    public synchronized double getAvgWaitingSum() { return avgWaitingSum; }
+
+    public synchronized double getLastAvgWaiting() { return lastAvgWaiting; }
+
+    public synchronized long getSampleCount() { return samples; }
+
+    // ---------- distributions (copies; merge them across runs with LogHistogram.merge) ----------
+
+    /** waiting time of finished trips */
+    public synchronized LogHistogram getTripWaiting() { return tripWaiting.copy(); }
+
+    /** travel time (spawn to exit) of finished trips */
+    public synchronized LogHistogram getTripTravelTime() { return tripTravel.copy(); }
+
+    /** waiting time on one approach, per vehicle that left it (null if none did) */
+    public synchronized LogHistogram getApproachWaiting(Road approach) {
+        int i = approach.getIndex();
+        return i >= 0 && i < approachWaiting.length && approachWaiting[i] != null ? approachWaiting[i].copy() : null;
+    }
+
+    /** time spent on one approach, per vehicle that left it (null if none did) */
+    public synchronized LogHistogram getApproachTravelTime(Road approach) {
+        int i = approach.getIndex();
+        return i >= 0 && i < approachTravel.length && approachTravel[i] != null ? approachTravel[i].copy() : null;
+    }
+
+    /** all approach waiting histograms merged */
+    public synchronized LogHistogram getAllApproachWaiting() {
+        LogHistogram all = new LogHistogram(HISTOGRAM_UNIT);
+        for (LogHistogram h : approachWaiting) if (h != null) all.merge(h);
+        return all;
+    }
+
+    public synchronized double getActiveWaiting() { return activeWaiting; }
+
+    /**
+     * Forget the active vehicles' waiting (their list was cleared).
+     */
+    public synchronized void resetActiveWaiting() { activeWaiting = 0.0; }
+
+    // ---------- checkpoint support ----------
+
+    /**
+     * Put back the running waiting sum and the distributions (approach arrays by road index, null = none).
+     */
+    public synchronized void restoreDistributions(double activeWaiting, LogHistogram tripWaiting, LogHistogram tripTravel,
+                                                  LogHistogram[] approachWaiting, LogHistogram[] approachTravel) {
+        this.activeWaiting = activeWaiting;
+        this.tripWaiting.merge(tripWaiting);
+        this.tripTravel.merge(tripTravel);
+        this.approachWaiting = approachWaiting.clone();
+        this.approachTravel = approachTravel.clone();
+    }
+
+    /**
+     * Restore counters from a checkpoint. Snapshot history is not part of a checkpoint.
+     */
+    public synchronized void restoreCounters(int completed, long samples, double avgWaitingSum, double lastAvgWaiting) {
+        this.completed = completed;
+        this.samples = samples;
+        this.avgWaitingSum = avgWaitingSum;
+        this.lastAvgWaiting = lastAvgWaiting;
+    }
+
+    /**
+     * Recorded samples as snapshot objects (built on each call, for export).
+     */
     public synchronized List<MetricsSnapshot> getSnapshots() {
-        return new ArrayList<>(snapshots);
+        List<MetricsSnapshot> out = new ArrayList<>(rows);
+        for (int r = 0; r < rows; r++) {
+            Map<String, Integer> queues = new LinkedHashMap<>();
+            String[] keys = queueKeys[r];
+            for (int j = 0; j < keys.length; j++) queues.put(keys[j], queueValues[queueStart[r] + j]);
+            out.add(new MetricsSnapshot(time[r], rowAvgWaiting[r], rowCompleted[r], rowActive[r], queues));
+        }
+        return out;
     }
 
+    public synchronized int getSnapshotCount() { return rows; }
+
     /**
      * Snapshot DTO (public so exporter can access)
      */
@@ -0,0 +1,152 @@
+package util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Embedded HTTP endpoint serving LiveMetrics in Prometheus text exposition format (GET /metrics).
+ * Uses the JDK's built-in server; each scrape runs on its own virtual thread and only reads the
+ * seqlock-published values, so scrapes never block or lock the simulation thread.
+ *
+ * Binds the loopback interface unless a host is given (e.g. "0.0.0.0" to accept scrapes from other
+ * machines; the endpoint has no authentication).
+ *
+ * Attach with Simulation.setLiveMetrics(server.getLiveMetrics()).
+ */
+public final class MetricsServer {
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final LiveMetrics live;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // previous scrape, for the tick rate (only touched by scrape threads)
+    private long lastTicks = -1;
+    private long lastWallNanos;
+    private double lastRate;
+
+    public MetricsServer(int port) throws IOException {
+        this(null, port, new LiveMetrics());
+    }
+
+    public MetricsServer(int port, LiveMetrics live) throws IOException {
+        this(null, port, live);
+    }
+
+    public MetricsServer(String host, int port) throws IOException {
+        this(host, port, new LiveMetrics());
+    }
+
+    /**
+     * @param host address or name to bind (null = loopback only)
+     */
+    public MetricsServer(String host, int port, LiveMetrics live) throws IOException {
+        this.live = live;
+        InetSocketAddress address = host == null
+                ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port)
+                : new InetSocketAddress(host, port);
+        if (address.isUnresolved()) throw new IOException("unknown metrics host " + host);
+        this.server = HttpServer.create(address, 0);
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public LiveMetrics getLiveMetrics() { return live; }
+
+    public int getPort() { return server.getAddress().getPort(); }
+
+    public void start() { server.start(); }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            if (!"GET".equals(ex.getRequestMethod()) && !"HEAD".equals(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render(live.read()).getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if ("HEAD".equals(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(200, -1);
+                return;
+            }
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            ex.close();
+        }
+    }
+
+    /**
+     * Ticks per wall-clock second since the previous scrape (the last value if no tick happened).
+     */
+    private synchronized double tickRate(LiveMetrics.Snapshot s) {
+        if (lastTicks >= 0 && s.getWallNanos() > lastWallNanos) {
+            lastRate = (s.getTicks() - lastTicks) / ((s.getWallNanos() - lastWallNanos) / 1e9);
+        }
+        if (lastTicks < 0 || s.getWallNanos() > lastWallNanos) {
+            lastTicks = s.getTicks();
+            lastWallNanos = s.getWallNanos();
+        }
+        return lastRate;
+    }
+
+    String render(LiveMetrics.Snapshot s) {
+        StringBuilder sb = new StringBuilder(1024);
+        metric(sb, "smarttraffic_vehicles_completed_total", "counter", "Vehicles that left the network.");
+        sb.append("smarttraffic_vehicles_completed_total ").append(s.getCompleted()).append('\n');
+        metric(sb, "smarttraffic_vehicles_active", "gauge", "Vehicles currently on the network.");
+        sb.append("smarttraffic_vehicles_active ").append(s.getActive()).append('\n');
+        metric(sb, "smarttraffic_waiting_seconds_avg", "gauge", "Mean waiting time of active vehicles at the last tick.");
+        sb.append("smarttraffic_waiting_seconds_avg ").append(number(s.getAvgWaiting())).append('\n');
+        metric(sb, "smarttraffic_queue_length", "gauge", "Vehicles waiting at the stop line of an approach.");
+        for (int i = 0; i < s.getApproachCount(); i++) {
+            sb.append("smarttraffic_queue_length{approach=\"").append(escape(s.getApproachId(i))).append("\"} ")
+                    .append(s.getQueue(i)).append('\n');
+        }
+        metric(sb, "smarttraffic_sim_time_seconds", "gauge", "Simulated time.");
+        sb.append("smarttraffic_sim_time_seconds ").append(number(s.getSimTime())).append('\n');
+        metric(sb, "smarttraffic_ticks_total", "counter", "Simulation ticks executed.");
+        sb.append("smarttraffic_ticks_total ").append(s.getTicks()).append('\n');
+        metric(sb, "smarttraffic_tick_rate", "gauge", "Ticks per wall-clock second since the previous scrape.");
+        sb.append("smarttraffic_tick_rate ").append(number(tickRate(s))).append('\n');
+        metric(sb, "smarttraffic_tick_latency_seconds", "summary", "Wall-clock time of Simulation.tick (log buckets, about 19% resolution).");
+        for (double q : QUANTILES) {
+            sb.append("smarttraffic_tick_latency_seconds{quantile=\"").append(q).append("\"} ")
+                    .append(number(s.getLatencyQuantile(q))).append('\n');
+        }
+        sb.append("smarttraffic_tick_latency_seconds_sum ").append(number(s.getLatencySumSeconds())).append('\n');
+        sb.append("smarttraffic_tick_latency_seconds_count ").append(s.getLatencyCount()).append('\n');
+        return sb.toString();
+    }
+
+    private static void metric(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String number(double v) {
+        if (Double.isNaN(v)) return "NaN";
+        if (Double.isInfinite(v)) return v > 0 ? "+Inf" : "-Inf";
+        return Double.toString(v);
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
\ No newline at end of file
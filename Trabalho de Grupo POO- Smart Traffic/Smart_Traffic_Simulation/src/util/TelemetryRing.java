@@ -0,0 +1,276 @@
+package util;
+
+import model.Intersection;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Memory-mapped ring of Metrics samples, so processes on the same host can tail the run by mapping
+ * the file (no sockets, no calls into the simulation JVM). Attach with Metrics.setTelemetry.
+ *
+ * File layout (little-endian):
+ * <pre>
+ * header, 64 bytes
+ *   0  int  magic 'STRG'        4  int  version (1)
+ *   8  int  slot size (bytes)  12  int  capacity (slots)
+ *  16  int  approaches         20  int  approach id size (bytes)
+ *  24  long head: samples fully written (release store after each sample)
+ * approach ids: approaches x 32 bytes, UTF-8, zero padded
+ * slots: capacity x slot size; sample n lives in slot n % capacity
+ *   0  long seq: 2n+1 while sample n is written, 2n+2 once complete
+ *   8  double simTime          16  long epoch millis
+ *  24  int  completed          28  int  active
+ *  32  double avgWaiting       40  int[approaches] queue lengths (padded to 8 bytes)
+ * </pre>
+ * A reader takes head h, reads slot (h-1) % capacity and accepts it if seq was 2h both before and
+ * after copying (seqlock); otherwise the writer lapped it and it reads head again.
+ */
+public class TelemetryRing implements AutoCloseable {
+    public static final int MAGIC = 0x53545247; // "STRG"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int ID_SIZE = 32;
+    static final int HEAD = 24;
+    static final int SLOT_SIM_TIME = 8, SLOT_EPOCH_MILLIS = 16, SLOT_COMPLETED = 24, SLOT_ACTIVE = 28,
+            SLOT_AVG_WAITING = 32, SLOT_QUEUES = 40;
+
+    // acquire/release access to the 8-byte-aligned seq and head words of the mapping
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buf;
+    private final int capacity;
+    private final int slotSize;
+    private final int approaches;
+    private final int slotsStart;
+    private long head;
+
+    private TelemetryRing(FileChannel channel, MappedByteBuffer buf, int capacity, int slotSize, int approaches, long head) {
+        this.channel = channel;
+        this.buf = buf;
+        this.capacity = capacity;
+        this.slotSize = slotSize;
+        this.approaches = approaches;
+        this.slotsStart = HEADER_SIZE + approaches * ID_SIZE;
+        this.head = head;
+    }
+
+    /**
+     * Create (or truncate) a ring file for the approaches of the given intersections.
+     */
+    public static TelemetryRing create(Path file, int capacity, List<Intersection> intersections) throws IOException {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        int approaches = 0;
+        for (Intersection in : intersections) approaches += in.getApproachCount();
+        int slotSize = slotSize(approaches);
+        long size = HEADER_SIZE + (long) approaches * ID_SIZE + (long) capacity * slotSize;
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("ring too large: " + size + " bytes");
+
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(0, MAGIC);
+        buf.putInt(4, VERSION);
+        buf.putInt(8, slotSize);
+        buf.putInt(12, capacity);
+        buf.putInt(16, approaches);
+        buf.putInt(20, ID_SIZE);
+        int k = 0;
+        for (Intersection in : intersections) {
+            for (int a = 0; a < in.getApproachCount(); a++) {
+                byte[] id = in.getApproach(a).getId().getBytes(StandardCharsets.UTF_8);
+                int at = HEADER_SIZE + k++ * ID_SIZE;
+                for (int b = 0; b < ID_SIZE; b++) buf.put(at + b, b < Math.min(id.length, ID_SIZE) ? id[b] : 0);
+            }
+        }
+        LONGS.setRelease(buf, HEAD, 0L);
+        return new TelemetryRing(ch, buf, capacity, slotSize, approaches, 0L);
+    }
+
+    /**
+     * Map an existing ring file read-only (for readers in another process, or tools).
+     */
+    public static TelemetryRing open(Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+            ch.close();
+            throw new IOException("not a telemetry ring (version " + VERSION + "): " + file);
+        }
+        return new TelemetryRing(ch, buf, buf.getInt(12), buf.getInt(8), buf.getInt(16), -1L);
+    }
+
+    static int slotSize(int approaches) {
+        return (SLOT_QUEUES + approaches * 4 + 7) & ~7;
+    }
+
+    // ---------- writer (one thread) ----------
+
+    /**
+     * Append one sample: a handful of stores into the mapping, no allocation, no system call.
+     */
+    public void write(double simTime, int completed, int active, double avgWaiting, List<Intersection> intersections) {
+        long n = head;
+        int at = begin(n, simTime, completed, active, avgWaiting);
+        int k = 0;
+        for (int i = 0; i < intersections.size() && k < approaches; i++) {
+            Intersection in = intersections.get(i);
+            for (int a = 0, m = in.getApproachCount(); a < m && k < approaches; a++) {
+                buf.putInt(at + SLOT_QUEUES + 4 * k++, in.countWaitingVehicles(in.getApproach(a)));
+            }
+        }
+        commit(n, at);
+    }
+
+    /**
+     * Append one sample with queue lengths already copied, in approach order.
+     */
+    public void write(double simTime, int completed, int active, double avgWaiting, int[] queues) {
+        long n = head;
+        int at = begin(n, simTime, completed, active, avgWaiting);
+        for (int k = 0, m = Math.min(queues.length, approaches); k < m; k++) buf.putInt(at + SLOT_QUEUES + 4 * k, queues[k]);
+        commit(n, at);
+    }
+
+    private int begin(long n, double simTime, int completed, int active, double avgWaiting) {
+        int at = slotsStart + (int) (n % capacity) * slotSize;
+        LONGS.setOpaque(buf, at, 2 * n + 1);
+        VarHandle.storeStoreFence();
+        buf.putDouble(at + SLOT_SIM_TIME, simTime);
+        buf.putLong(at + SLOT_EPOCH_MILLIS, System.currentTimeMillis());
+        buf.putInt(at + SLOT_COMPLETED, completed);
+        buf.putInt(at + SLOT_ACTIVE, active);
+        buf.putDouble(at + SLOT_AVG_WAITING, avgWaiting);
+        return at;
+    }
+
+    private void commit(long n, int at) {
+        LONGS.setRelease(buf, at, 2 * n + 2);
+        head = n + 1;
+        LONGS.setRelease(buf, HEAD, n + 1);
+    }
+
+    // ---------- reader ----------
+
+    public int getCapacity() { return capacity; }
+    public int getApproachCount() { return approaches; }
+
+    public String getApproachId(int i) {
+        int at = HEADER_SIZE + i * ID_SIZE;
+        int len = 0;
+        while (len < ID_SIZE && buf.get(at + len) != 0) len++;
+        byte[] b = new byte[len];
+        for (int j = 0; j < len; j++) b[j] = buf.get(at + j);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Samples written so far (as published in the header).
+     */
+    public long getHead() {
+        return (long) LONGS.getAcquire(buf, HEAD);
+    }
+
+    /**
+     * Copy sample n into out (queues needs getApproachCount() entries).
+     * Returns false if the sample is not written yet or was overwritten while reading.
+     */
+    public boolean read(long n, Sample out) {
+        if (n < 0 || n >= getHead() || n < getHead() - capacity) return false;
+        int at = slotsStart + (int) (n % capacity) * slotSize;
+        long seq = (long) LONGS.getAcquire(buf, at);
+        if (seq != 2 * n + 2) return false;
+        out.index = n;
+        out.simTime = buf.getDouble(at + SLOT_SIM_TIME);
+        out.epochMillis = buf.getLong(at + SLOT_EPOCH_MILLIS);
+        out.completed = buf.getInt(at + SLOT_COMPLETED);
+        out.active = buf.getInt(at + SLOT_ACTIVE);
+        out.avgWaiting = buf.getDouble(at + SLOT_AVG_WAITING);
+        if (out.queues.length != approaches) out.queues = new int[approaches];
+        for (int k = 0; k < approaches; k++) out.queues[k] = buf.getInt(at + SLOT_QUEUES + 4 * k);
+        VarHandle.loadLoadFence();
+        return (long) LONGS.getAcquire(buf, at) == seq;
+    }
+
+    /**
+     * Latest complete sample into out; false if nothing has been written yet.
+     */
+    public boolean readLatest(Sample out) {
+        while (true) {
+            long h = getHead();
+            if (h == 0) return false;
+            if (read(h - 1, out)) return true;
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Flush the mapping to the file and release the channel (the mapping stays valid until GC).
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            if (!buf.isReadOnly()) buf.force();
+            channel.close();
+        }
+    }
+
+    /**
+     * One decoded slot (reusable between reads).
+     */
+    public static class Sample {
+        private long index;
+        private double simTime;
+        private long epochMillis;
+        private int completed;
+        private int active;
+        private double avgWaiting;
+        private int[] queues = new int[0];
+
+        public long getIndex() { return index; }
+        public double getSimTime() { return simTime; }
+        public long getEpochMillis() { return epochMillis; }
+        public int getCompleted() { return completed; }
+        public int getActive() { return active; }
+        public double getAvgWaiting() { return avgWaiting; }
+        public int getQueue(int approach) { return queues[approach]; }
+    }
+
+    /**
+     * Tail a ring file, printing one line per second of wall time.
+     * Usage: java util.TelemetryRing ring.bin
+     */
+    public static void main(String[] args) throws Exception {
+        try (TelemetryRing ring = open(Path.of(args[0]))) {
+            StringBuilder header = new StringBuilder("sample,simTime,completed,active,avgWaiting");
+            for (int i = 0; i < ring.getApproachCount(); i++) header.append(',').append(ring.getApproachId(i));
+            System.out.println(header);
+            Sample s = new Sample();
+            long last = -1;
+            while (true) {
+                if (ring.readLatest(s) && s.getIndex() != last) {
+                    last = s.getIndex();
+                    StringBuilder line = new StringBuilder();
+                    line.append(s.getIndex()).append(',').append(String.format(Locale.ROOT, "%.2f", s.getSimTime()))
+                            .append(',').append(s.getCompleted()).append(',').append(s.getActive())
+                            .append(',').append(String.format(Locale.ROOT, "%.3f", s.getAvgWaiting()));
+                    for (int i = 0; i < ring.getApproachCount(); i++) line.append(',').append(s.getQueue(i));
+                    System.out.println(line);
+                }
+                Thread.sleep(1000);
+            }
+        }
+    }
+}
\ No newline at end of file
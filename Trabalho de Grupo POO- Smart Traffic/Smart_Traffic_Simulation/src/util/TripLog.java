@@ -0,0 +1,361 @@
+package util;
+
+import model.Road;
+import model.Vehicle;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only binary log with one fixed-width record per completed trip. Attach with Simulation.setTripLog.
+ *
+ * The simulation thread fills primitive column arrays of a batch; full batches go to a background
+ * writer thread and come back empty, so memory is a fixed number of batches however many trips a
+ * run produces. If the writer falls behind, record waits for a free batch instead of buffering more.
+ *
+ * File layout (little-endian):
+ * <pre>
+ * header, 16 bytes
+ *   0  int  magic 'STTL'        4  int  version (1)
+ *   8  int  record size (64)   12  int  reserved
+ * records, 64 bytes each
+ *   0  byte[16] vehicle id, ASCII, zero padded (longer ids are cut, other characters become '?')
+ *  16  double spawn time        24  double exit time (simulated seconds)
+ *  32  double waiting time      40  double travel time
+ *  48  int    origin road       52  int    exit road (road indexes, -1 if unknown)
+ *  56  int    roads visited     60  int    reserved
+ * </pre>
+ * A file is complete once close has returned; a crashed run leaves every batch written so far.
+ */
+public class TripLog implements AutoCloseable {
+    public static final int MAGIC = 0x5354544C; // "STTL"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int ID_SIZE = 16;
+    public static final int RECORD_SIZE = 64;
+    public static final int DEFAULT_BATCH = 8192;
+    public static final int DEFAULT_BATCHES = 4;
+
+    private final FileChannel channel;
+    private final BlockingQueue<Batch> free;
+    private final BlockingQueue<Batch> full;
+    private final Thread writer;
+    private final ByteBuffer out; // writer thread only
+    private Batch current;        // simulation thread only
+    private long recorded;
+    private volatile long written;
+    private volatile IOException failure;
+    private boolean closed;
+
+    private TripLog(FileChannel channel, int batchSize, int batches) {
+        this.channel = channel;
+        this.free = new ArrayBlockingQueue<>(batches);
+        this.full = new ArrayBlockingQueue<>(batches + 1);
+        for (int i = 0; i < batches; i++) free.add(new Batch(batchSize));
+        this.out = ByteBuffer.allocateDirect(batchSize * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        this.writer = new Thread(this::drain, "trip-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static TripLog create(Path file) throws IOException {
+        return create(file, DEFAULT_BATCH, DEFAULT_BATCHES);
+    }
+
+    /**
+     * Create (or truncate) a log file. batchSize records per hand-off, batches buffers in rotation (at least 2).
+     */
+    public static TripLog create(Path file, int batchSize, int batches) throws IOException {
+        if (batchSize <= 0 || batches < 2) throw new IllegalArgumentException("need batchSize > 0 and batches >= 2");
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0).flip();
+        while (header.hasRemaining()) ch.write(header);
+        return new TripLog(ch, batchSize, batches);
+    }
+
+    // ---------- simulation thread ----------
+
+    /**
+     * Log the trip of a vehicle that just left the world at exitTime.
+     */
+    public void record(Vehicle v, double exitTime) {
+        String id = v.getId();
+        record(packId(id, 0), packId(id, 8), v.getSpawnTime(), exitTime, v.getWaitingTime(), v.getTripTime(),
+                index(v.getOrigin()), index(v.getLastRoad()), v.getRoadsVisited());
+    }
+
+    /**
+     * Append one record (id0/id1: the id's first and second 8 bytes, see packId). Allocation-free;
+     * blocks only while every batch is waiting to be written.
+     */
+    public void record(long id0, long id1, double spawnTime, double exitTime, double waitingTime, double travelTime,
+                       int originRoad, int exitRoad, int roadsVisited) {
+        if (closed) throw new IllegalStateException("Trip log closed");
+        checkFailure();
+        if (current == null) current = take(free);
+        Batch b = current;
+        int i = b.size++;
+        b.id0[i] = id0;
+        b.id1[i] = id1;
+        b.spawnTime[i] = spawnTime;
+        b.exitTime[i] = exitTime;
+        b.waitingTime[i] = waitingTime;
+        b.travelTime[i] = travelTime;
+        b.originRoad[i] = originRoad;
+        b.exitRoad[i] = exitRoad;
+        b.roadsVisited[i] = roadsVisited;
+        recorded++;
+        if (b.size == b.id0.length) handOff();
+    }
+
+    /**
+     * Hand the partial batch to the writer and wait until everything recorded so far is in the file.
+     */
+    public void flush() throws IOException {
+        if (current != null && current.size > 0) handOff();
+        while (written < recorded && failure == null && writer.isAlive()) LockSupport.parkNanos(100_000L);
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Flush, stop the writer thread and close the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        try {
+            flush();
+        } finally {
+            closed = true;
+            writer.interrupt();
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            channel.close();
+        }
+    }
+
+    /** records passed to record so far */
+    public long getRecorded() { return recorded; }
+
+    /** records already written to the file */
+    public long getWritten() { return written; }
+
+    private void handOff() {
+        full.add(current); // never full: at most every batch is queued
+        current = null;
+    }
+
+    private void checkFailure() {
+        if (failure != null) throw new IllegalStateException("Trip log write failed", failure);
+    }
+
+    private Batch take(BlockingQueue<Batch> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a trip log buffer", e);
+        }
+    }
+
+    private static int index(Road r) {
+        return r == null ? -1 : r.getIndex();
+    }
+
+    /**
+     * Characters from..from+7 of id as ASCII bytes in a little-endian long (missing characters are 0).
+     */
+    public static long packId(String id, int from) {
+        long packed = 0;
+        for (int i = 0; i < 8 && from + i < id.length(); i++) {
+            char c = id.charAt(from + i);
+            long b = c > 0 && c < 128 ? c : '?';
+            packed |= b << (8 * i);
+        }
+        return packed;
+    }
+
+    // ---------- writer thread ----------
+
+    private void drain() {
+        while (true) {
+            Batch b;
+            try {
+                b = full.take();
+            } catch (InterruptedException e) {
+                return; // close() flushed first
+            }
+            try {
+                if (failure == null) writeBatch(b);
+            } catch (IOException e) {
+                failure = e;
+            }
+            written += b.size;
+            b.size = 0;
+            free.add(b);
+        }
+    }
+
+    private void writeBatch(Batch b) throws IOException {
+        out.clear();
+        for (int i = 0; i < b.size; i++) {
+            out.putLong(b.id0[i]);
+            out.putLong(b.id1[i]);
+            out.putDouble(b.spawnTime[i]);
+            out.putDouble(b.exitTime[i]);
+            out.putDouble(b.waitingTime[i]);
+            out.putDouble(b.travelTime[i]);
+            out.putInt(b.originRoad[i]);
+            out.putInt(b.exitRoad[i]);
+            out.putInt(b.roadsVisited[i]);
+            out.putInt(0);
+        }
+        out.flip();
+        while (out.hasRemaining()) channel.write(out);
+    }
+
+    /**
+     * Column arrays of up to one batch of records.
+     */
+    private static class Batch {
+        private final long[] id0;
+        private final long[] id1;
+        private final double[] spawnTime;
+        private final double[] exitTime;
+        private final double[] waitingTime;
+        private final double[] travelTime;
+        private final int[] originRoad;
+        private final int[] exitRoad;
+        private final int[] roadsVisited;
+        private int size;
+
+        Batch(int capacity) {
+            id0 = new long[capacity];
+            id1 = new long[capacity];
+            spawnTime = new double[capacity];
+            exitTime = new double[capacity];
+            waitingTime = new double[capacity];
+            travelTime = new double[capacity];
+            originRoad = new int[capacity];
+            exitRoad = new int[capacity];
+            roadsVisited = new int[capacity];
+        }
+    }
+
+    // ---------- reading ----------
+
+    /**
+     * Sequential reader of a log file.
+     */
+    public static class Reader implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+        public Reader(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    channel.close();
+                    throw new EOFException("truncated trip log header: " + file);
+                }
+            }
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != RECORD_SIZE) {
+                channel.close();
+                throw new IOException("not a trip log (version " + VERSION + "): " + file);
+            }
+            buf.limit(0);
+        }
+
+        /**
+         * Decode the next record into out; false at the end of the file (a partial last record is ignored).
+         */
+        public boolean next(Record out) throws IOException {
+            if (buf.remaining() < RECORD_SIZE) {
+                buf.compact();
+                while (buf.position() < RECORD_SIZE) {
+                    if (channel.read(buf) < 0) break;
+                }
+                buf.flip();
+                if (buf.remaining() < RECORD_SIZE) return false;
+            }
+            int len = 0;
+            while (len < ID_SIZE && buf.get(buf.position() + len) != 0) len++;
+            byte[] id = new byte[len];
+            buf.get(buf.position(), id);
+            buf.position(buf.position() + ID_SIZE);
+            out.vehicle = new String(id, StandardCharsets.US_ASCII);
+            out.spawnTime = buf.getDouble();
+            out.exitTime = buf.getDouble();
+            out.waitingTime = buf.getDouble();
+            out.travelTime = buf.getDouble();
+            out.originRoad = buf.getInt();
+            out.exitRoad = buf.getInt();
+            out.roadsVisited = buf.getInt();
+            buf.getInt();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException { channel.close(); }
+    }
+
+    /**
+     * One decoded record (reusable between reads).
+     */
+    public static class Record {
+        private String vehicle;
+        private double spawnTime;
+        private double exitTime;
+        private double waitingTime;
+        private double travelTime;
+        private int originRoad;
+        private int exitRoad;
+        private int roadsVisited;
+
+        public String getVehicle() { return vehicle; }
+        public double getSpawnTime() { return spawnTime; }
+        public double getExitTime() { return exitTime; }
+        public double getWaitingTime() { return waitingTime; }
+        public double getTravelTime() { return travelTime; }
+        public int getOriginRoad() { return originRoad; }
+        public int getExitRoad() { return exitRoad; }
+        public int getRoadsVisited() { return roadsVisited; }
+    }
+
+    /**
+     * Print a log file as CSV.
+     * Usage: java util.TripLog trips.bin
+     */
+    public static void main(String[] args) throws Exception {
+        try (Reader r = new Reader(Path.of(args[0]))) {
+            System.out.println("vehicle,spawnTime,exitTime,waitingTime,travelTime,originRoad,exitRoad,roadsVisited");
+            Record rec = new Record();
+            StringBuilder line = new StringBuilder();
+            while (r.next(rec)) {
+                line.setLength(0);
+                line.append(rec.getVehicle())
+                        .append(',').append(String.format(Locale.ROOT, "%.2f,%.2f,%.3f,%.3f", rec.getSpawnTime(),
+                                rec.getExitTime(), rec.getWaitingTime(), rec.getTravelTime()))
+                        .append(',').append(rec.getOriginRoad()).append(',').append(rec.getExitRoad())
+                        .append(',').append(rec.getRoadsVisited());
+                System.out.println(line);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,25 @@
+package util;
+
+/**
+ * Waiting seconds accumulated by a simulation's vehicles (Vehicle objects and the off-heap engine)
+ * during one tick, folded into Metrics once at the end of the tick instead of one synchronized
+ * Metrics call per waiting vehicle.
+ *
+ * Not thread-safe: owned by the simulation thread (vehicles are only updated there).
+ */
+public final class WaitingTally {
+    private double pending;
+
+    public void add(double dt) { pending += dt; }
+
+    public double getPending() { return pending; }
+
+    /**
+     * Add what was accumulated since the last fold to metrics' active waiting and start over.
+     */
+    public void foldInto(Metrics metrics) {
+        if (pending == 0.0) return;
+        metrics.addActiveWaiting(pending);
+        pending = 0.0;
+    }
+}
\ No newline at end of file
@@ -3,22 +3,114 @@ package view;
 import controller.Simulation;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 import model.*;
 
 /**
  * CanvasView: renderer updated to draw lanes (two lanes per road) and place vehicles in lane positions.
+ *
+ * The static scene (roads, lane markings, crosswalks) is rendered once in world space into a cached
+ * image at a power-of-two resolution level and drawn through the current pan/zoom transform, so panning
+ * never re-renders it and zooming only does when the level changes. Beyond MAX_STATIC_PIXELS the
+ * visible roads are drawn directly instead (few are on screen at such zoom levels).
+ *
+ * Road placement comes from a precomputed RoadLayout, and a level-of-detail policy drops labels and
+ * then switches to point sprites as the number of vehicles grows.
+ *
+ * Drag to pan, scroll to zoom, double-click to reset. Only roads whose boxes intersect the visible area
+ * (SpatialGrid query) are drawn, together with their vehicles.
+ *
+ * Vehicles are drawn from a SpriteAtlas built in the background at startup (plain rectangles until it
+ * is ready), picking the sprite per vehicle and the pre-rotated cell per road heading.
+ *
+ * Heatmap mode draws each road bin (Road.BIN_LENGTH) colored by mean speed and weighted by density
+ * instead of individual vehicles, so the cost is O(visible road segments).
  */
-public class CanvasView extends Canvas {
+public final class CanvasView extends Canvas {
+    // level of detail: above these counts labels are dropped / vehicles become point sprites
+    private static final int LABEL_LIMIT = 300;
+    private static final int SPRITE_LIMIT = 5000;
+
+    // heatmap: speed relative to free flow (Vehicle max speed) and bin capacity for full opacity
+    private static final double FREE_FLOW_SPEED = 18.0;
+    private static final double JAM_VEHICLES_PER_BIN = 2 * Road.BIN_LENGTH / 6.5; // two lanes, ~6.5 m per car
+    private boolean heatmap = false;
+
+    // textured vehicles (null until the background build finishes)
+    private static final double SPRITE_LENGTH = 16;
+    private static final double SPRITE_WIDTH = 8;
+    private volatile SpriteAtlas atlas;
+
     private Simulation sim;
 
+    // cached static layer in world space (rebuilt when the layout or the zoom level changes)
+    private static final double MAX_STATIC_PIXELS = 4096;
+    private static final Color BACKGROUND = Color.web("#e8e8e8");
+    private WritableImage staticLayer;
+    private double staticScale;   // image pixels per world unit
+    private double[] staticBounds; // world rectangle covered by the image
+    private RoadLayout layout;
+    private final Viewport viewport = new Viewport();
+    private int[] visible = new int[0];
+
+    // drag state
+    private double dragX, dragY;
+
     public CanvasView(Simulation sim) {
         super(1000, 600);
         this.sim = sim;
+        SpriteAtlas.buildAsync().thenAccept(a -> atlas = a);
+
+        setOnMousePressed(e -> {
+            dragX = e.getX();
+            dragY = e.getY();
+        });
+        setOnMouseDragged(e -> {
+            viewport.pan(e.getX() - dragX, e.getY() - dragY);
+            dragX = e.getX();
+            dragY = e.getY();
+            draw();
+        });
+        setOnScroll(e -> {
+            double factor = e.getDeltaY() > 0 ? 1.15 : 1 / 1.15;
+            viewport.zoomAt(factor, e.getX(), e.getY(), getWidth(), getHeight());
+            draw();
+        });
+        setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2) {
+                viewport.reset();
+                draw();
+            }
+        });
     }
 
     public void setSimulation(Simulation sim) {
         this.sim = sim;
+        this.layout = null;
+        this.staticLayer = null;
+    }
+
+    public void setHeatmap(boolean heatmap) {
+        this.heatmap = heatmap;
+    }
+
+    public boolean isHeatmap() { return heatmap; }
+
+    /**
+     * Place a road explicitly (generated networks). World units; the sample cross spans about -220..220.
+     */
+    public void placeRoad(Road r, double x0, double y0, double x1, double y1) {
+        ensureLayout().place(r, x0, y0, x1, y1);
+        staticLayer = null;
+    }
+
+    private RoadLayout ensureLayout() {
+        if (layout == null || layout.getRoadCount() != sim.getRoadCount()) {
+            layout = new RoadLayout(sim.getRoads(), sim.getIntersections());
+            staticLayer = null;
+        }
+        return layout;
     }
 
     public void draw() {
@@ -26,16 +118,197 @@ public class CanvasView extends Canvas {
         double w = getWidth();
         double h = getHeight();
 
-        // background
-        g.setFill(Color.web("#e8e8e8"));
+        g.setTransform(1, 0, 0, 1, 0, 0);
+        g.setFill(BACKGROUND);
         g.fillRect(0, 0, w, h);
-
         if (sim == null) return;
 
-        // draw intersection center
-        double cx = w / 2;
-        double cy = h / 2;
-        double roadHalf = 220;
+        RoadLayout layout = ensureLayout();
+        if (visible.length < layout.getSlotCount()) visible = new int[layout.getSlotCount()];
+
+        // visible world rectangle -> roads to draw
+        double x0 = viewport.toWorldX(0, w), y0 = viewport.toWorldY(0, h);
+        double x1 = viewport.toWorldX(w, w), y1 = viewport.toWorldY(h, h);
+        int nVisible = layout.getGrid().query(x0, y0, x1, y1, visible);
+
+        // from here on draw in world coordinates
+        double zoom = viewport.getZoom();
+        g.setTransform(zoom, 0, 0, zoom, viewport.translateX(w), viewport.translateY(h));
+
+        double[] b = layout.getBounds();
+        double level = Math.pow(2, Math.ceil(Math.log(zoom) / Math.log(2))); // resolution level >= zoom
+        if (level * Math.max(b[2] - b[0], b[3] - b[1]) <= MAX_STATIC_PIXELS) {
+            if (staticLayer == null || staticScale != level || staticBounds != b) {
+                staticLayer = renderStaticLayer(layout, b, level);
+                staticScale = level;
+                staticBounds = b;
+            }
+            g.drawImage(staticLayer, b[0], b[1], b[2] - b[0], b[3] - b[1]);
+        } else {
+            drawStatic(g, layout, visible, nVisible);
+        }
+
+        // draw traffic lights near intersection (inbound control), only those of visible roads
+        for (int i = 0; i < nVisible; i++) {
+            Intersection owner = layout.getLightOwner(visible[i]);
+            if (owner == null) continue;
+            RoadLayout.RoadTransform t = layout.getSlot(visible[i]);
+            TrafficLight light = owner.getLightForRoad(t.road);
+            if (light == null || !inside(t.lightX, t.lightY, x0, y0, x1, y1)) continue;
+
+            Color c = Color.DARKRED;
+            model.LightColor lc = light.getColor();
+            if (lc != null) {
+                switch (lc) {
+                    case GREEN: c = Color.LIMEGREEN; break;
+                    case YELLOW: c = Color.GOLD; break;
+                    case RED: c = Color.DARKRED; break;
+                }
+            }
+
+            g.setFill(Color.BLACK);
+            g.fillOval(t.lightX - 6, t.lightY - 6, 12, 12);
+            g.setFill(c);
+            g.fillOval(t.lightX - 4, t.lightY - 4, 8, 8);
+        }
+
+        if (heatmap) {
+            drawHeatmap(g, layout, nVisible);
+            drawHud(g);
+            return;
+        }
+
+        // level of detail is chosen from what is actually on screen
+        int onScreen = 0;
+        for (int i = 0; i < nVisible; i++) onScreen += layout.getSlot(visible[i]).road.getVehicleCount();
+        boolean sprites = onScreen > SPRITE_LIMIT;
+        boolean labels = onScreen <= LABEL_LIMIT;
+
+        // draw vehicles of visible roads (placed into lane positions)
+        SpriteAtlas atlas = this.atlas;
+        boolean textured = atlas != null && atlas.getCount() > 0 && !sprites;
+        g.setFill(Color.DODGERBLUE);
+        for (int i = 0; i < nVisible; i++) {
+            RoadLayout.RoadTransform t = layout.getSlot(visible[i]);
+            t.road.forEachVehicle(v -> {
+                double x = t.x(v.getPosition(), v.getLane());
+                double y = t.y(v.getPosition(), v.getLane());
+                if (!inside(x, y, x0 - 12, y0 - 12, x1, y1)) return;
+
+                if (sprites) {
+                    // point sprite: one fill per vehicle, no per-vehicle state changes
+                    g.fillRect(x, y, 3, 3);
+                    return;
+                }
+
+                double vw, vh;
+                if (textured) {
+                    // textured vehicle: fixed source rectangle in the atlas, chosen by id and road heading
+                    int sprite = Math.floorMod(v.getId().hashCode(), atlas.getCount());
+                    int heading = t.heading;
+                    boolean horizontal = atlas.isHorizontal(heading);
+                    vw = horizontal ? SPRITE_LENGTH : SPRITE_WIDTH;
+                    vh = horizontal ? SPRITE_WIDTH : SPRITE_LENGTH;
+                    g.drawImage(atlas.getImage(), atlas.srcX(heading), atlas.srcY(sprite),
+                            atlas.srcW(heading), atlas.srcH(heading), x, y, vw, vh);
+                } else {
+                    // vehicle rectangle
+                    vw = Math.max(8, v.getLength() * 2);
+                    vh = 12;
+                    g.fillRoundRect(x, y, vw, vh, 4, 4);
+                }
+
+                // ID label
+                if (labels) {
+                    g.setFill(Color.WHITE);
+                    g.fillText(v.getId(), x + 2, y + vh - 2);
+                    g.setFill(Color.DODGERBLUE);
+                }
+            });
+        }
+
+        drawHud(g);
+    }
+
+    private void drawHud(GraphicsContext g) {
+        double zoom = viewport.getZoom();
+        // HUD (screen coordinates)
+        g.setTransform(1, 0, 0, 1, 0, 0);
+        g.setFill(Color.BLACK);
+        g.fillText(String.format("Sim time: %.1f s", sim.getSimTime()), 12, 18);
+        g.fillText(String.format("Vehicles active: %d", sim.getVehicleCount()), 12, 34);
+        g.fillText(String.format("Completed: %d", sim.getMetrics().getCompleted()), 12, 50);
+        if (zoom != 1.0) g.fillText(String.format("Zoom: %.2fx", zoom), 12, 66);
+    }
+
+    /**
+     * One colored segment per non-empty bin of each visible road: green = free flow, red = stopped;
+     * opacity grows with the number of vehicles in the bin.
+     */
+    private void drawHeatmap(GraphicsContext g, RoadLayout layout, int nVisible) {
+        g.setLineWidth(2 * RoadLayout.LANE_OFFSET + 4);
+        for (int i = 0; i < nVisible; i++) {
+            RoadLayout.RoadTransform t = layout.getSlot(visible[i]);
+            Road road = t.road;
+            int bins = road.getBinCount();
+            for (int b = 0; b < bins; b++) {
+                int n = road.getBinVehicles(b);
+                if (n == 0) continue;
+                double speedRatio = Math.max(0.0, Math.min(1.0, road.getBinMeanSpeed(b) / FREE_FLOW_SPEED));
+                double density = Math.min(1.0, n / JAM_VEHICLES_PER_BIN);
+                double from = b * Road.BIN_LENGTH;
+                double to = Math.min(road.getLength(), from + Road.BIN_LENGTH);
+                g.setStroke(Color.hsb(120 * speedRatio, 0.9, 0.9, 0.35 + 0.65 * density));
+                g.strokeLine(t.startX + t.dirX * from * t.scale, t.startY + t.dirY * from * t.scale,
+                        t.startX + t.dirX * to * t.scale, t.startY + t.dirY * to * t.scale);
+            }
+        }
+    }
+
+    private static boolean inside(double x, double y, double x0, double y0, double x1, double y1) {
+        return x >= x0 && x <= x1 && y >= y0 && y <= y1;
+    }
+
+    /**
+     * Render background, roads, lane markings and crosswalks of the whole layout (world rectangle b)
+     * into an image with scale pixels per world unit.
+     */
+    private WritableImage renderStaticLayer(RoadLayout layout, double[] b, double scale) {
+        Canvas scratch = new Canvas(Math.ceil((b[2] - b[0]) * scale), Math.ceil((b[3] - b[1]) * scale));
+        GraphicsContext g = scratch.getGraphicsContext2D();
+        g.setFill(BACKGROUND);
+        g.fillRect(0, 0, scratch.getWidth(), scratch.getHeight());
+        g.setTransform(scale, 0, 0, scale, -b[0] * scale, -b[1] * scale);
+
+        int[] all = new int[layout.getSlotCount()];
+        for (int i = 0; i < all.length; i++) all[i] = i;
+        drawStatic(g, layout, all, all.length);
+        return scratch.snapshot(null, null);
+    }
+
+    /**
+     * Roads of the given slots in world coordinates: explicitly placed roads (generated networks) as one
+     * thick segment each, and the sample cross if any of its roads is among them.
+     */
+    private void drawStatic(GraphicsContext g, RoadLayout layout, int[] slots, int n) {
+        g.setStroke(Color.DARKGRAY);
+        g.setLineWidth(4 * RoadLayout.LANE_OFFSET);
+        boolean hasCross = false;
+        for (int i = 0; i < n; i++) {
+            RoadLayout.RoadTransform t = layout.getSlot(slots[i]);
+            if (t.cross) { hasCross = true; continue; }
+            g.strokeLine(t.startX, t.startY, t.endX(), t.endY());
+        }
+        if (hasCross) drawCross(g);
+    }
+
+    /**
+     * The sample cross, centered at (0, 0).
+     */
+    private void drawCross(GraphicsContext g) {
+        double cx = 0;
+        double cy = 0;
+        double roadHalf = RoadLayout.ROAD_HALF;
 
         // draw four roads (simple cross)
         g.setFill(Color.DARKGRAY);
@@ -61,125 +334,6 @@ public class CanvasView extends Canvas {
         drawCrosswalk(g, cx + 60 - 6, cy - 20, 12, 40);
         drawCrosswalk(g, cx - 20, cy - 60 - 6, 40, 12);
         drawCrosswalk(g, cx - 20, cy + 60 - 6, 40, 12);
-
-        // draw traffic lights near intersection (inbound control)
-        for (Intersection I : sim.getIntersections()) {
-            for (Road r : I.getLights().keySet()) {
-                TrafficLight light = I.getLights().get(r);
-                double lx = cx, ly = cy;
-                switch (r.getId()) {
-                    case "North_in":
-                        lx = cx - 80;
-                        ly = cy - 60 - 10;
-                        break;
-                    case "South_in":
-                        lx = cx + 80;
-                        ly = cy + 60 + 10;
-                        break;
-                    case "East_in":
-                        lx = cx + 60 + 10;
-                        ly = cy - 80;
-                        break;
-                    case "West_in":
-                        lx = cx - 60 - 10;
-                        ly = cy + 80;
-                        break;
-                    default:
-                        lx = cx;
-                        ly = cy;
-                }
-
-                Color c = Color.DARKRED;
-                model.LightColor lc = light.getColor();
-                if (lc != null) {
-                    switch (lc) {
-                        case GREEN: c = Color.LIMEGREEN; break;
-                        case YELLOW: c = Color.GOLD; break;
-                        case RED: c = Color.DARKRED; break;
-                    }
-                }
-
-                g.setFill(Color.BLACK);
-                g.fillOval(lx - 6, ly - 6, 12, 12);
-                g.setFill(c);
-                g.fillOval(lx - 4, ly - 4, 8, 8);
-            }
-        }
-
-        // draw vehicles (placed into lane positions)
-        for (Vehicle v : sim.getVehicles()) {
-            if (v.getRoad() == null) continue;
-            double x = cx, y = cy;
-            double pos = v.getPosition(); // meters along the road
-            double scale = 0.6; // visual scaling factor
-            int lane = v.getLane();
-
-            String id = v.getRoad().getId();
-            // inbound roads (start at outer edge, go towards center)
-            if ("North_in".equals(id)) {
-                double startX = cx - 20;
-                double startY = cy - roadHalf;
-                x = startX + (lane == 0 ? -8 : 8); // two lanes offset
-                y = startY + pos * scale;
-            } else if ("South_in".equals(id)) {
-                double startX = cx + 20;
-                double startY = cy + roadHalf;
-                x = startX + (lane == 0 ? -8 : 8);
-                y = startY - pos * scale;
-            } else if ("East_in".equals(id)) {
-                double startX = cx + roadHalf;
-                double startY = cy - 20;
-                x = startX - pos * scale;
-                y = startY + (lane == 0 ? -8 : 8);
-            } else if ("West_in".equals(id)) {
-                double startX = cx - roadHalf;
-                double startY = cy + 20;
-                x = startX + pos * scale;
-                y = startY + (lane == 0 ? -8 : 8);
-            }
-            // outbound roads (start just after intersection and go outward)
-            else if ("North_out".equals(id)) {
-                double startX = cx - 20;
-                double startY = cy - 60;
-                x = startX + (lane == 0 ? -8 : 8);
-                y = startY - pos * scale;
-            } else if ("South_out".equals(id)) {
-                double startX = cx + 20;
-                double startY = cy + 60;
-                x = startX + (lane == 0 ? -8 : 8);
-                y = startY + pos * scale;
-            } else if ("East_out".equals(id)) {
-                double startX = cx + 60;
-                double startY = cy - 20;
-                x = startX + pos * scale;
-                y = startY + (lane == 0 ? -8 : 8);
-            } else if ("West_out".equals(id)) {
-                double startX = cx - 60;
-                double startY = cy + 20;
-                x = startX - pos * scale;
-                y = startY + (lane == 0 ? -8 : 8);
-            } else {
-                // fallback - center line
-                x = cx + pos * scale - 10;
-                y = cy - 100;
-            }
-
-            // vehicle rectangle
-            g.setFill(Color.DODGERBLUE);
-            double vw = Math.max(8, v.getLength() * 2);
-            double vh = 12;
-            g.fillRoundRect(x, y, vw, vh, 4, 4);
-
-            // ID label
-            g.setFill(Color.WHITE);
-            g.fillText(v.getId(), x + 2, y + vh - 2);
-        }
-
-        // HUD
-        g.setFill(Color.BLACK);
-        g.fillText(String.format("Sim time: %.1f s", sim.getSimTime()), 12, 18);
-        g.fillText(String.format("Vehicles active: %d", sim.getVehicles().size()), 12, 34);
-        g.fillText(String.format("Completed: %d", sim.getMetrics().getCompleted()), 12, 50);
     }
 
     private void drawCrosswalk(GraphicsContext g, double x, double y, double w, double h) {
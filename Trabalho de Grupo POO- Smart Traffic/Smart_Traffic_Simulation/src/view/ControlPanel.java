@@ -5,11 +5,10 @@ import javafx.geometry.Pos;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.Slider;
+import javafx.scene.control.ToggleButton;
 import javafx.scene.layout.HBox;
 import util.Metrics;
 
-import java.util.List;
-
 /**
  * Control panel extended with export button and stats labels.
  */
@@ -18,6 +17,8 @@ public class ControlPanel extends HBox {
     private final Button stopButton = new Button("Stop");
     private final Button resetButton = new Button("Reset");
     private final Button exportButton = new Button("Export");
+    private final Button whatIfButton = new Button("What-if");
+    private final ToggleButton heatmapToggle = new ToggleButton("Heatmap");
     private final Slider speedSlider = new Slider(0.1, 5.0, 1.0);
     private final Label speedLabel = new Label("Speed: 1.0x");
     private final Label timeLabel = new Label("Time: 0.0s");
@@ -40,13 +41,15 @@ public class ControlPanel extends HBox {
 
         stopButton.setDisable(true); // initially stopped
 
-        getChildren().addAll(startButton, stopButton, resetButton, exportButton, speedLabel, speedSlider, timeLabel, avgWaitLabel, completedLabel);
+        getChildren().addAll(startButton, stopButton, resetButton, exportButton, whatIfButton, heatmapToggle, speedLabel, speedSlider, timeLabel, avgWaitLabel, completedLabel);
     }
 
     public Button getStartButton() { return startButton; }
     public Button getStopButton() { return stopButton; }
     public Button getResetButton() { return resetButton; }
     public Button getExportButton() { return exportButton; }
+    public Button getWhatIfButton() { return whatIfButton; }
+    public ToggleButton getHeatmapToggle() { return heatmapToggle; }
     public double getSpeedMultiplier() { return speedSlider.getValue(); }
 
     public void setRunning(boolean running) {
@@ -56,11 +59,9 @@ public class ControlPanel extends HBox {
 
     public void updateLabels(double simTime, Metrics metrics) {
         timeLabel.setText(String.format("Time: %.1f s", simTime));
-        List<Metrics.MetricsSnapshot> snaps = metrics.getSnapshots();
-        if (!snaps.isEmpty()) {
-            Metrics.MetricsSnapshot last = snaps.get(snaps.size() - 1);
-            avgWaitLabel.setText(String.format("Avg wait: %.2f s", last.getAvgWaiting()));
-            completedLabel.setText(String.format("Completed: %d", last.getCompleted()));
+        if (metrics.getSampleCount() > 0) {
+            avgWaitLabel.setText(String.format("Avg wait: %.2f s", metrics.getLastAvgWaiting()));
+            completedLabel.setText(String.format("Completed: %d", metrics.getCompleted()));
         } else {
             avgWaitLabel.setText("Avg wait: 0.0s");
             completedLabel.setText("Completed: 0");
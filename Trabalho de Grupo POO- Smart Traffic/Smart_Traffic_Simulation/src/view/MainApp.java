@@ -2,11 +2,14 @@ package view;
 
 import controller.AdaptiveCycle;
 import controller.FixedCycle;
+import controller.Scenarios;
 import controller.Simulation;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.StackPane;
 import controller.Strategy;
+import controller.WhatIf;
+import javafx.application.Platform;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.geometry.Insets;
@@ -15,11 +18,12 @@ import javafx.scene.control.Alert;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
-import model.*;
 import util.CsvExporter;
+import util.MetricsServer;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * MainApp updated to create paired inbound/outbound roads and dynamic routing.
@@ -32,8 +36,16 @@ public class MainApp extends Application {
     private Strategy strategy;
 
     private AnimationTimer animator;
+    private final WhatIf whatIf = new WhatIf(Runtime.getRuntime().availableProcessors());
     private boolean running = false;
 
+    // Prometheus endpoint, started when -Dsmarttraffic.metrics.port=<port> is given
+    // (loopback only unless -Dsmarttraffic.metrics.host=<address>)
+    private MetricsServer metricsServer;
+
+    // end-of-tick bookkeeping on a second thread when -Dsmarttraffic.pipelined=true
+    private final boolean pipelined = Boolean.getBoolean("smarttraffic.pipelined");
+
     // fixed-step for deterministic simulation, seconds
     private final double fixedDt = 0.05; // 50 ms -> 20 updates/sec
 
@@ -43,6 +55,15 @@ public class MainApp extends Application {
 
     @Override
     public void start(Stage stage) {
+        Integer port = Integer.getInteger("smarttraffic.metrics.port");
+        if (port != null) {
+            try {
+                metricsServer = new MetricsServer(System.getProperty("smarttraffic.metrics.host"), port);
+                metricsServer.start();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
         setupWorld();
 
         // choose strategy: adaptive example
@@ -89,6 +110,32 @@ public class MainApp extends Application {
             }
         });
 
+        controls.getHeatmapToggle().setOnAction(e -> {
+            canvas.setHeatmap(controls.getHeatmapToggle().isSelected());
+            canvas.draw();
+        });
+
+        // fork the live run into branches with other strategies and compare the next 2 minutes
+        controls.getWhatIfButton().setOnAction(e -> {
+            controls.getWhatIfButton().setDisable(true);
+            double forkTime = sim.getSimTime();
+            List<WhatIf.Branch> branches = Arrays.asList(
+                    new WhatIf.Branch("current", null),
+                    new WhatIf.Branch("FixedCycle(8)", () -> new FixedCycle(8.0)),
+                    new WhatIf.Branch("AdaptiveCycle(5,1,20,3)", () -> new AdaptiveCycle(5.0, 1.0, 20.0, 3.0)));
+            whatIf.fork(sim, strategy, branches, 120.0, fixedDt).whenComplete((results, err) -> Platform.runLater(() -> {
+                controls.getWhatIfButton().setDisable(false);
+                if (err != null) {
+                    new Alert(Alert.AlertType.ERROR, "What-if failed: " + err.getMessage()).show();
+                    return;
+                }
+                Alert a = new Alert(Alert.AlertType.INFORMATION);
+                a.setHeaderText("Next 120 s from t=" + String.format("%.1f", forkTime) + " s");
+                a.setContentText(WhatIf.formatTable(results));
+                a.show();
+            }));
+        });
+
         BorderPane root = new BorderPane();
         root.setCenter(canvas);
         BorderPane.setMargin(canvas, new Insets(8));
@@ -146,93 +193,21 @@ public class MainApp extends Application {
 
     /**
      * Build a sample world (cross) with vehicles.
-     * Now creates inbound/outbound pairs and sets turn options for intersection.
+     * The layout itself lives in Scenarios so headless runs can reuse it.
      */
     private void setupWorld() {
-        sim = new Simulation();
-
-        // create intersection
-        Intersection inter = new Intersection("I1");
-        sim.addIntersection(inter);
-
-        // create road pairs (inbound = towards intersection, outbound = away from intersection)
-        // naming: North_in, North_out, etc.
-        Road northIn = new Road("North_in", 300, null, inter);
-        Road northOut = new Road("North_out", 300, inter, null);
-        Road southIn = new Road("South_in", 300, null, inter);
-        Road southOut = new Road("South_out", 300, inter, null);
-        Road eastIn = new Road("East_in", 300, null, inter);
-        Road eastOut = new Road("East_out", 300, inter, null);
-        Road westIn = new Road("West_in", 300, null, inter);
-        Road westOut = new Road("West_out", 300, inter, null);
-
-        // register roads in simulation
-        sim.addRoad(northIn); sim.addRoad(northOut);
-        sim.addRoad(southIn); sim.addRoad(southOut);
-        sim.addRoad(eastIn);  sim.addRoad(eastOut);
-        sim.addRoad(westIn);  sim.addRoad(westOut);
-
-        // lights only for incoming roads
-        TrafficLight ln = new TrafficLight(8, 2, 16);
-        TrafficLight ls = new TrafficLight(8, 2, 16);
-        TrafficLight le = new TrafficLight(8, 2, 16);
-        TrafficLight lw = new TrafficLight(8, 2, 16);
-
-        // initial states
-        ln.setState(new model.state.GreenState(6.0));
-        lw.setState(new model.state.GreenState(6.0));
-        ls.setState(new model.state.RedState(16.0));
-        le.setState(new model.state.RedState(16.0));
-
-        // add incoming mapping
-        inter.addIncomingRoad(northIn, ln);
-        inter.addIncomingRoad(southIn, ls);
-        inter.addIncomingRoad(eastIn, le);
-        inter.addIncomingRoad(westIn, lw);
-
-        // register outgoing roads in intersection
-        inter.addOutgoingRoad(northOut);
-        inter.addOutgoingRoad(southOut);
-        inter.addOutgoingRoad(eastOut);
-        inter.addOutgoingRoad(westOut);
-
-        // define turning options per incoming road (straight, left, right)
-        // from northIn: straight -> southOut, left -> eastOut, right -> westOut
-        inter.setOutgoingOptions(northIn, Arrays.asList(southOut, eastOut, westOut));
-        // from southIn:
-        inter.setOutgoingOptions(southIn, Arrays.asList(northOut, westOut, eastOut));
-        // from eastIn:
-        inter.setOutgoingOptions(eastIn, Arrays.asList(westOut, northOut, southOut));
-        // from westIn:
-        inter.setOutgoingOptions(westIn, Arrays.asList(eastOut, southOut, northOut));
-
-        // spawn vehicles on inbound roads (start at the beginning of each inbound road)
-        int perRoad = 5;
-        double startOffsetMeters = 5.0;   // distância do início do road (em metros)
-        double spacingMeters = 12.0;      // espaçamento entre veículos em metros
-
-        // spawn vehicles on inbound roads (start at the beginning of each inbound road)
-        for (int i = 0; i < perRoad; i++) {
-            Vehicle vn = new Vehicle("N" + i, northIn, startOffsetMeters + i * spacingMeters, 0, null);
-            sim.addVehicle(vn);
-            Vehicle vs = new Vehicle("S" + i, southIn, startOffsetMeters + i * spacingMeters, 0, null);
-            sim.addVehicle(vs);
-            Vehicle ve = new Vehicle("E" + i, eastIn, startOffsetMeters + i * spacingMeters, 0, null);
-            sim.addVehicle(ve);
-            Vehicle vw = new Vehicle("W" + i, westIn, startOffsetMeters + i * spacingMeters, 0, null);
-            sim.addVehicle(vw);
-        }
-
-        // (Opcional) you can also spawn vehicles on outbound roads if needed
-        // e.g., vehicles leaving the center (use small position near center)
-        // Vehicle vOut = new Vehicle("O1", northOut, 5.0, Arrays.asList(northOut));
-        // sim.addVehicle(vOut);
+        if (sim != null) sim.setPipelined(false);
+        sim = Scenarios.buildCross();
+        if (metricsServer != null) sim.setLiveMetrics(metricsServer.getLiveMetrics());
+        sim.setPipelined(pipelined);
     }
 
     @Override
     public void stop() throws Exception {
         super.stop();
         if (animator != null) animator.stop();
+        whatIf.shutdown();
+        if (metricsServer != null) metricsServer.stop();
     }
 
     public static void main(String[] args) {
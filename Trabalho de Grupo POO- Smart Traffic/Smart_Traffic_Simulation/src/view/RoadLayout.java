@@ -0,0 +1,308 @@
+package view;
+
+import model.Intersection;
+import model.Road;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * World placement of every road, computed once per world instead of matching road ids each frame.
+ * A vehicle at (pos, lane) on a road is drawn at start + dir * pos * scale + side * laneSign * LANE_OFFSET.
+ *
+ * Roads of the sample cross are placed automatically around (0,0). Every other road is derived from
+ * the intersection graph: intersections go on a grid (breadth-first, so connected ones are close), a
+ * road between two of them is a segment from one to the other, and an entry or exit road is an arm
+ * around its intersection, entry k sharing arm k with exit k. Each direction keeps to its right, so
+ * opposite roads do not overlap. Generated networks may still call place(...) with explicit endpoints.
+ * Each placed road also gets a slot (dense index) used by the SpatialGrid.
+ */
+class RoadLayout {
+    static final double SCALE = 0.6;        // visual scaling factor (pixels per meter)
+    static final double LANE_OFFSET = 8;    // distance of each lane from the road's center line
+    static final double ROAD_HALF = 220;    // length of each arm of the cross
+    static final double GRID_CELL = 200;    // spatial index cell size (world units)
+    static final double NODE_SPACING = 2 * ROAD_HALF; // distance between derived intersections
+    static final double NODE_RADIUS = 40;   // derived roads stop this far from their intersection
+    static final double MIN_ARM = 60;       // drawn length limits of derived entry/exit arms
+
+    /**
+     * Precomputed transform for one road.
+     */
+    static final class RoadTransform {
+        final Road road;
+        final int slot;
+        final boolean cross;          // part of the hard-coded sample cross (drawn by the static layer)
+        final double startX, startY;  // world point for position 0
+        final double dirX, dirY;      // unit direction of travel
+        final double sideX, sideY;    // unit lane offset direction (lane 0 negative, lane 1 positive)
+        final double scale;           // world units per meter along the road
+        final double lightX, lightY;  // where to draw the light controlling this road (if any)
+        final int heading;            // closest axis direction for sprites: 0 right, 1 down, 2 left, 3 up
+
+        RoadTransform(Road road, int slot, boolean cross, double startX, double startY, double dirX, double dirY,
+                      double sideX, double sideY, double scale, double lightX, double lightY) {
+            this.road = road;
+            this.slot = slot;
+            this.cross = cross;
+            this.startX = startX;
+            this.startY = startY;
+            this.dirX = dirX;
+            this.dirY = dirY;
+            this.sideX = sideX;
+            this.sideY = sideY;
+            this.scale = scale;
+            this.lightX = lightX;
+            this.lightY = lightY;
+            this.heading = Math.abs(dirX) >= Math.abs(dirY) ? (dirX >= 0 ? 0 : 2) : (dirY >= 0 ? 1 : 3);
+        }
+
+        double x(double pos, int lane) {
+            return startX + dirX * pos * scale + sideX * (lane == 0 ? -LANE_OFFSET : LANE_OFFSET);
+        }
+
+        double y(double pos, int lane) {
+            return startY + dirY * pos * scale + sideY * (lane == 0 ? -LANE_OFFSET : LANE_OFFSET);
+        }
+
+        double endX() { return startX + dirX * road.getLength() * scale; }
+        double endY() { return startY + dirY * road.getLength() * scale; }
+    }
+
+    private final Map<Road, RoadTransform> transforms = new IdentityHashMap<>();
+    private final List<RoadTransform> slots = new ArrayList<>();
+    private final Map<Road, Intersection> lightOwners = new IdentityHashMap<>(); // incoming road -> its light's intersection
+    private final int roadCount;
+    private SpatialGrid grid;
+    private double[] bounds;
+
+    /**
+     * Build transforms for all roads; roads of the sample cross are placed around (0, 0), the others
+     * are derived from the intersections they connect. Road ids are only looked at here, once.
+     */
+    RoadLayout(List<Road> roads, List<Intersection> intersections) {
+        List<Road> all = new ArrayList<>(roads);
+        // incoming roads registered only on intersections still need a place and a light position
+        for (Intersection in : intersections) {
+            for (Road r : in.getLights().keySet()) {
+                lightOwners.put(r, in);
+                if (!all.contains(r)) all.add(r);
+            }
+        }
+        List<Road> derived = new ArrayList<>();
+        for (Road r : all) if (!crossTransform(r)) derived.add(r);
+        if (!derived.isEmpty()) derive(derived, intersections);
+        this.roadCount = roads.size();
+    }
+
+    RoadTransform get(Road r) {
+        return transforms.get(r);
+    }
+
+    RoadTransform getSlot(int slot) {
+        return slots.get(slot);
+    }
+
+    int getRoadCount() { return roadCount; }
+    int getSlotCount() { return slots.size(); }
+
+    /**
+     * Intersection whose light controls the road of this slot, or null if it has none.
+     */
+    Intersection getLightOwner(int slot) {
+        return lightOwners.get(slots.get(slot).road);
+    }
+
+    /**
+     * Place a road explicitly (generated networks), from (x0, y0) to (x1, y1) in world units.
+     */
+    void place(Road r, double x0, double y0, double x1, double y1) {
+        double len = Math.hypot(x1 - x0, y1 - y0);
+        double dx = len > 0 ? (x1 - x0) / len : 1;
+        double dy = len > 0 ? (y1 - y0) / len : 0;
+        double scale = r.getLength() > 0 ? len / r.getLength() : SCALE;
+        put(r, false, x0, y0, dx, dy, -dy, dx, scale, x1, y1);
+    }
+
+    /**
+     * Spatial index over road bounding boxes, stretched to hold the road's light (rebuilt lazily after place()).
+     */
+    SpatialGrid getGrid() {
+        if (grid == null) {
+            double pad = LANE_OFFSET + 12; // lanes plus vehicle size (or light radius)
+            double[][] boxes = new double[slots.size()][];
+            for (RoadTransform t : slots) {
+                double bx0 = Math.min(t.startX, t.endX()), by0 = Math.min(t.startY, t.endY());
+                double bx1 = Math.max(t.startX, t.endX()), by1 = Math.max(t.startY, t.endY());
+                if (lightOwners.containsKey(t.road)) {
+                    bx0 = Math.min(bx0, t.lightX); by0 = Math.min(by0, t.lightY);
+                    bx1 = Math.max(bx1, t.lightX); by1 = Math.max(by1, t.lightY);
+                }
+                boxes[t.slot] = new double[]{bx0 - pad, by0 - pad, bx1 + pad, by1 + pad};
+            }
+            grid = new SpatialGrid(boxes, GRID_CELL);
+        }
+        return grid;
+    }
+
+    /**
+     * World rectangle {x0, y0, x1, y1} holding every road (with its lanes) and the sample cross.
+     */
+    double[] getBounds() {
+        if (bounds == null) {
+            double pad = LANE_OFFSET + 12;
+            double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+            double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+            for (RoadTransform t : slots) {
+                if (t.cross) {
+                    x0 = Math.min(x0, -ROAD_HALF); y0 = Math.min(y0, -ROAD_HALF);
+                    x1 = Math.max(x1, ROAD_HALF); y1 = Math.max(y1, ROAD_HALF);
+                }
+                x0 = Math.min(x0, Math.min(t.startX, t.endX()) - pad);
+                y0 = Math.min(y0, Math.min(t.startY, t.endY()) - pad);
+                x1 = Math.max(x1, Math.max(t.startX, t.endX()) + pad);
+                y1 = Math.max(y1, Math.max(t.startY, t.endY()) + pad);
+            }
+            bounds = slots.isEmpty() ? new double[]{-ROAD_HALF, -ROAD_HALF, ROAD_HALF, ROAD_HALF}
+                    : new double[]{x0, y0, x1, y1};
+        }
+        return bounds;
+    }
+
+    private void put(Road r, boolean cross, double sx, double sy, double dx, double dy, double ox, double oy,
+                     double scale, double lx, double ly) {
+        RoadTransform old = transforms.get(r);
+        int slot = old != null ? old.slot : slots.size();
+        RoadTransform t = new RoadTransform(r, slot, cross, sx, sy, dx, dy, ox, oy, scale, lx, ly);
+        transforms.put(r, t);
+        if (old != null) slots.set(slot, t);
+        else slots.add(t);
+        grid = null;
+        bounds = null;
+    }
+
+    /**
+     * Place a road of the sample cross; false if the id is not one of them.
+     */
+    private boolean crossTransform(Road r) {
+        switch (r.getId()) {
+            // inbound roads (start at outer edge, go towards center)
+            case "North_in": put(r, true, -20, -ROAD_HALF, 0, 1, 1, 0, SCALE, -80, -60 - 10); break;
+            case "South_in": put(r, true, 20, ROAD_HALF, 0, -1, 1, 0, SCALE, 80, 60 + 10); break;
+            case "East_in":  put(r, true, ROAD_HALF, -20, -1, 0, 0, 1, SCALE, 60 + 10, -80); break;
+            case "West_in":  put(r, true, -ROAD_HALF, 20, 1, 0, 0, 1, SCALE, -60 - 10, 80); break;
+            // outbound roads (start just after intersection and go outward)
+            case "North_out": put(r, true, -20, -60, 0, -1, 1, 0, SCALE, 0, 0); break;
+            case "South_out": put(r, true, 20, 60, 0, 1, 1, 0, SCALE, 0, 0); break;
+            case "East_out":  put(r, true, 60, -20, 1, 0, 0, 1, SCALE, 0, 0); break;
+            case "West_out":  put(r, true, -60, 20, -1, 0, 0, 1, SCALE, 0, 0); break;
+            default: return false;
+        }
+        return true;
+    }
+
+    /**
+     * Place roads outside the sample cross from the intersections they connect.
+     */
+    private void derive(List<Road> roads, List<Intersection> intersections) {
+        // intersections already at the center of the sample cross
+        Map<Intersection, double[]> nodes = new IdentityHashMap<>();
+        for (RoadTransform t : slots) {
+            if (t.road.getFrom() != null) nodes.put(t.road.getFrom(), new double[]{0, 0});
+            if (t.road.getTo() != null) nodes.put(t.road.getTo(), new double[]{0, 0});
+        }
+
+        // the rest on a grid east of the cross, in breadth-first order over the roads
+        Map<Intersection, List<Intersection>> links = new IdentityHashMap<>();
+        List<Intersection> order = new ArrayList<>(intersections);
+        for (Road r : roads) {
+            Intersection a = r.getFrom(), b = r.getTo();
+            if (a != null && !order.contains(a)) order.add(a);
+            if (b != null && !order.contains(b)) order.add(b);
+            if (a != null && b != null && a != b) {
+                links.computeIfAbsent(a, k -> new ArrayList<>()).add(b);
+                links.computeIfAbsent(b, k -> new ArrayList<>()).add(a);
+            }
+        }
+        List<Intersection> visit = new ArrayList<>();
+        Map<Intersection, Boolean> seen = new IdentityHashMap<>();
+        for (Intersection start : order) {
+            if (nodes.containsKey(start) || seen.containsKey(start)) continue;
+            ArrayDeque<Intersection> queue = new ArrayDeque<>();
+            queue.add(start);
+            seen.put(start, Boolean.TRUE);
+            while (!queue.isEmpty()) {
+                Intersection in = queue.poll();
+                visit.add(in);
+                for (Intersection n : links.getOrDefault(in, List.of())) {
+                    if (nodes.containsKey(n) || seen.containsKey(n)) continue;
+                    seen.put(n, Boolean.TRUE);
+                    queue.add(n);
+                }
+            }
+        }
+        int cols = Math.max(1, (int) Math.ceil(Math.sqrt(visit.size())));
+        double originX = nodes.isEmpty() ? 0 : NODE_SPACING;
+        double maxY = nodes.isEmpty() ? -NODE_SPACING : ROAD_HALF;
+        for (int i = 0; i < visit.size(); i++) {
+            double y = (i / cols) * NODE_SPACING;
+            nodes.put(visit.get(i), new double[]{originX + (i % cols) * NODE_SPACING, y});
+            maxY = Math.max(maxY, y);
+        }
+
+        // entry and exit arms, numbered per intersection
+        Map<Intersection, int[]> arms = new IdentityHashMap<>(); // {entries, exits}
+        for (Road r : roads) {
+            Intersection a = r.getFrom(), b = r.getTo();
+            if (a == null && b != null) arms.computeIfAbsent(b, k -> new int[2])[0]++;
+            else if (a != null && (b == null || b == a)) arms.computeIfAbsent(a, k -> new int[2])[1]++;
+        }
+        Map<Intersection, int[]> used = new IdentityHashMap<>();
+        int loose = 0;
+        for (Road r : roads) {
+            Intersection a = r.getFrom(), b = r.getTo();
+            double len = Math.max(MIN_ARM, Math.min(ROAD_HALF, r.getLength() * SCALE));
+            if (a != null && b != null && a != b) {
+                double[] p = nodes.get(a), q = nodes.get(b);
+                double d = Math.hypot(q[0] - p[0], q[1] - p[1]);
+                double trim = d > 2 * NODE_RADIUS ? NODE_RADIUS / d : 0;
+                placeDerived(r, p[0] + (q[0] - p[0]) * trim, p[1] + (q[1] - p[1]) * trim,
+                        q[0] - (q[0] - p[0]) * trim, q[1] - (q[1] - p[1]) * trim);
+            } else if (a == null && b == null) {
+                // not connected to anything: a row below the network
+                double y = maxY + ROAD_HALF + (loose++) * 4 * LANE_OFFSET;
+                placeDerived(r, 0, y, len, y);
+            } else {
+                boolean entry = a == null;
+                Intersection in = entry ? b : a;
+                int[] n = arms.get(in);
+                int k = used.computeIfAbsent(in, x -> new int[2])[entry ? 0 : 1]++;
+                double angle = -Math.PI / 2 + 2 * Math.PI * k / Math.max(n[0], n[1]); // arm 0 points north
+                double ux = Math.cos(angle), uy = Math.sin(angle);
+                double[] c = nodes.get(in);
+                double nearX = c[0] + ux * NODE_RADIUS, nearY = c[1] + uy * NODE_RADIUS;
+                double farX = c[0] + ux * (NODE_RADIUS + len), farY = c[1] + uy * (NODE_RADIUS + len);
+                if (entry) placeDerived(r, farX, farY, nearX, nearY);
+                else placeDerived(r, nearX, nearY, farX, farY);
+            }
+        }
+    }
+
+    /**
+     * Derived road from (x0, y0) to (x1, y1), shifted to the right of that line so the opposite
+     * direction fits beside it; its light sits at the stop line, on the outer edge.
+     */
+    private void placeDerived(Road r, double x0, double y0, double x1, double y1) {
+        double len = Math.hypot(x1 - x0, y1 - y0);
+        double dx = len > 0 ? (x1 - x0) / len : 1;
+        double dy = len > 0 ? (y1 - y0) / len : 0;
+        double ox = -dy, oy = dx;
+        double shift = 2 * LANE_OFFSET;
+        double scale = r.getLength() > 0 ? len / r.getLength() : SCALE;
+        double light = shift + 3 * LANE_OFFSET;
+        put(r, false, x0 + ox * shift, y0 + oy * shift, dx, dy, ox, oy, scale, x1 + ox * light, y1 + oy * light);
+    }
+}
\ No newline at end of file
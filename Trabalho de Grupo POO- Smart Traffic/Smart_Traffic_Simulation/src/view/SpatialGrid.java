@@ -0,0 +1,81 @@
+package view;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over road bounding boxes (world coordinates). A query returns the roads whose boxes
+ * touch the visible rectangle, so per-frame work follows what is on screen rather than network size.
+ */
+class SpatialGrid {
+    private final double cellSize;
+    private final double minX, minY;
+    private final int cols, rows;
+    private final int[][] cells;     // road slots per cell
+    private final int[] cellCounts;
+    private final int[] stamp;       // per-road query stamp, avoids returning a road twice
+    private int queryId = 0;
+
+    /**
+     * @param boxes per road slot: {minX, minY, maxX, maxY}
+     */
+    SpatialGrid(double[][] boxes, double cellSize) {
+        this.cellSize = cellSize;
+        double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE, x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+        for (double[] b : boxes) {
+            x0 = Math.min(x0, b[0]);
+            y0 = Math.min(y0, b[1]);
+            x1 = Math.max(x1, b[2]);
+            y1 = Math.max(y1, b[3]);
+        }
+        if (boxes.length == 0) { x0 = y0 = 0; x1 = y1 = cellSize; }
+        this.minX = x0;
+        this.minY = y0;
+        this.cols = Math.max(1, (int) Math.ceil((x1 - x0) / cellSize) + 1);
+        this.rows = Math.max(1, (int) Math.ceil((y1 - y0) / cellSize) + 1);
+        this.cells = new int[cols * rows][];
+        this.cellCounts = new int[cols * rows];
+        this.stamp = new int[boxes.length];
+
+        for (int slot = 0; slot < boxes.length; slot++) {
+            double[] b = boxes[slot];
+            for (int cy = row(b[1]); cy <= row(b[3]); cy++) {
+                for (int cx = col(b[0]); cx <= col(b[2]); cx++) {
+                    add(cy * cols + cx, slot);
+                }
+            }
+        }
+    }
+
+    private void add(int cell, int slot) {
+        int[] c = cells[cell];
+        int n = cellCounts[cell];
+        if (c == null) c = cells[cell] = new int[4];
+        else if (n == c.length) c = cells[cell] = Arrays.copyOf(c, n * 2);
+        c[n] = slot;
+        cellCounts[cell] = n + 1;
+    }
+
+    private int col(double x) { return Math.max(0, Math.min(cols - 1, (int) ((x - minX) / cellSize))); }
+    private int row(double y) { return Math.max(0, Math.min(rows - 1, (int) ((y - minY) / cellSize))); }
+
+    /**
+     * Write the slots of roads touching the rectangle into out (sized for every road) and return how many.
+     */
+    int query(double x0, double y0, double x1, double y1, int[] out) {
+        queryId++;
+        int n = 0;
+        for (int cy = row(y0); cy <= row(y1); cy++) {
+            for (int cx = col(x0); cx <= col(x1); cx++) {
+                int cell = cy * cols + cx;
+                int[] c = cells[cell];
+                for (int i = 0, k = cellCounts[cell]; i < k; i++) {
+                    int slot = c[i];
+                    if (stamp[slot] == queryId) continue;
+                    stamp[slot] = queryId;
+                    out[n++] = slot;
+                }
+            }
+        }
+        return n;
+    }
+}
\ No newline at end of file
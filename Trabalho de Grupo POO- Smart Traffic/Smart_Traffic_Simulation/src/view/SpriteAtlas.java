@@ -0,0 +1,85 @@
+package view;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import util.ImageStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * All vehicle sprites packed into one pre-scaled image, in four headings each
+ * (0 = right, 1 = down, 2 = left, 3 = up), so drawing a vehicle is a single drawImage
+ * from a fixed source rectangle with no lookups or decoding during a frame.
+ */
+class SpriteAtlas {
+    static final String[] VEHICLE_SPRITES = {"1.png", "2.png", "3.png", "5.png", "6.png", "7.png"};
+    static final int CELL_LONG = 64;   // sprite length in atlas pixels (bundled cars face right)
+    static final int CELL_SHORT = 32;  // sprite width
+
+    private final WritableImage image;
+    private final int count;
+
+    private SpriteAtlas(WritableImage image, int count) {
+        this.image = image;
+        this.count = count;
+    }
+
+    /**
+     * Decode, scale and pack the sprites in the background.
+     */
+    static CompletableFuture<SpriteAtlas> buildAsync() {
+        List<CompletableFuture<Image>> parts = new ArrayList<>();
+        for (String name : VEHICLE_SPRITES) parts.add(ImageStore.loadAsync(name, CELL_LONG, CELL_SHORT));
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<Image> sprites = new ArrayList<>();
+            for (CompletableFuture<Image> f : parts) if (f.join() != null) sprites.add(f.join());
+            return pack(sprites);
+        });
+    }
+
+    /**
+     * One row per sprite: [right | left | down | up], horizontal cells CELL_LONG x CELL_SHORT,
+     * vertical cells CELL_SHORT x CELL_LONG.
+     */
+    private static SpriteAtlas pack(List<Image> sprites) {
+        int rowW = 2 * CELL_LONG + 2 * CELL_SHORT;
+        WritableImage atlas = new WritableImage(rowW, Math.max(1, sprites.size()) * CELL_LONG);
+        PixelWriter w = atlas.getPixelWriter();
+        for (int s = 0; s < sprites.size(); s++) {
+            PixelReader r = sprites.get(s).getPixelReader();
+            int oy = s * CELL_LONG;
+            for (int y = 0; y < CELL_SHORT; y++) {
+                for (int x = 0; x < CELL_LONG; x++) {
+                    int argb = r.getArgb(x, y);
+                    w.setArgb(x, oy + y, argb);                                              // right
+                    w.setArgb(CELL_LONG + (CELL_LONG - 1 - x), oy + (CELL_SHORT - 1 - y), argb); // left
+                    w.setArgb(2 * CELL_LONG + (CELL_SHORT - 1 - y), oy + x, argb);            // down
+                    w.setArgb(2 * CELL_LONG + CELL_SHORT + y, oy + (CELL_LONG - 1 - x), argb); // up
+                }
+            }
+        }
+        return new SpriteAtlas(atlas, sprites.size());
+    }
+
+    Image getImage() { return image; }
+    int getCount() { return count; }
+
+    boolean isHorizontal(int heading) { return heading == 0 || heading == 2; }
+
+    double srcX(int heading) {
+        switch (heading) {
+            case 0: return 0;
+            case 2: return CELL_LONG;
+            case 1: return 2 * CELL_LONG;
+            default: return 2 * CELL_LONG + CELL_SHORT;
+        }
+    }
+
+    double srcY(int sprite) { return sprite * CELL_LONG; }
+    double srcW(int heading) { return isHorizontal(heading) ? CELL_LONG : CELL_SHORT; }
+    double srcH(int heading) { return isHorizontal(heading) ? CELL_SHORT : CELL_LONG; }
+}
\ No newline at end of file
@@ -0,0 +1,48 @@
+package view;
+
+/**
+ * Pan/zoom state of the canvas. World coordinates are those of RoadLayout (the sample cross is centered
+ * at 0,0); screen = (world - center) * zoom + canvas center.
+ */
+class Viewport {
+    static final double MIN_ZOOM = 0.02;
+    static final double MAX_ZOOM = 20.0;
+
+    private double centerX = 0.0;
+    private double centerY = 0.0;
+    private double zoom = 1.0;
+
+    double getZoom() { return zoom; }
+
+    /**
+     * Move the view by a screen-space delta (e.g. a mouse drag).
+     */
+    void pan(double dxScreen, double dyScreen) {
+        centerX -= dxScreen / zoom;
+        centerY -= dyScreen / zoom;
+    }
+
+    /**
+     * Zoom by factor keeping the world point under (sx, sy) fixed on screen.
+     */
+    void zoomAt(double factor, double sx, double sy, double width, double height) {
+        double wx = toWorldX(sx, width);
+        double wy = toWorldY(sy, height);
+        zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        centerX = wx - (sx - width / 2) / zoom;
+        centerY = wy - (sy - height / 2) / zoom;
+    }
+
+    void reset() {
+        centerX = 0.0;
+        centerY = 0.0;
+        zoom = 1.0;
+    }
+
+    double toWorldX(double sx, double width) { return centerX + (sx - width / 2) / zoom; }
+    double toWorldY(double sy, double height) { return centerY + (sy - height / 2) / zoom; }
+
+    /** translation part of the world -> screen transform */
+    double translateX(double width) { return width / 2 - centerX * zoom; }
+    double translateY(double height) { return height / 2 - centerY * zoom; }
+}
\ No newline at end of file